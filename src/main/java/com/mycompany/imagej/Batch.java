@@ -2,25 +2,110 @@ package com.mycompany.imagej;
 
 import com.google.devtools.common.options.OptionsParser;
 import ij.IJ;
-import ij.ImagePlus;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.stream.Stream;
 
+/**
+ * Headless batch analysis of a folder of images
+ * Never opens a window, so that it can run on cluster nodes without a display.
+ */
 public class Batch {
     public static BatchOptions options;
+    public static Results results;
+
     public static void main(String... args) {
+        // Must be set before the first AWT class is loaded
+        System.setProperty("java.awt.headless", "true");
+
         OptionsParser parser = OptionsParser.newOptionsParser(BatchOptions.class);
         parser.parseAndExitUponError(args);
         options = parser.getOptions(BatchOptions.class);
-        if (options.inputFile.isEmpty() || options.anInt < 0 || options.aListStrings.isEmpty()) {
+        if (options.help || options.input.isEmpty() || options.output.isEmpty()) {
             printUsage(parser);
             return;
         }
-        File fi = new File(options.inputFile);
-        ImagePlus im = IJ.openImage(fi.getAbsolutePath());
-        RootAnalysis ra = new RootAnalysis(im);
+        if (!options.rootColour.equals("black") && !options.rootColour.equals("white")) {
+            System.out.println("Unknown root colour: " + options.rootColour);
+            return;
+        }
+        if (!(options.scalePix > 0) || !(options.scaleCm > 0)) {
+            System.out.println("Invalid scale: " + options.scalePix + " pixels for " + options.scaleCm + " cm");
+            return;
+        }
+        try {
+            RowWriter.setDefault(options.flush);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+        if (options.gridRows < 1 || options.gridCols < 1 || options.gridRings < 0) {
+            System.out.println("Invalid density grid: " + options.gridRows + "x" + options.gridCols
+                    + " with " + options.gridRings + " rings");
+            return;
+        }
+        for (String el : options.analyzers) {
+            if (!Stages.names().contains(el)) {
+                System.out.println("Unknown analyzer: " + el + ", expected one of " + Stages.names());
+                return;
+            }
+        }
+
+        File[] images = inputFiles(options.input);
+        if (images.length == 0) {
+            System.out.println("No images found in " + options.input);
+            return;
+        }
+        int nThreads = options.threads > 0 ? options.threads : Runtime.getRuntime().availableProcessors();
+        // The features of each image are written to the output as soon as they are computed,
+        // as JSON lines for .json/.jsonl/.ndjson and as one CSV row per image otherwise
+        results = new Results(images, options.output, (float) options.scalePix, (float) options.scaleCm,
+                options.rootColour.equals("black"), (float) options.minSize, options.analyzers, nThreads,
+                options.stageThreads > 0 ? options.stageThreads : Runtime.getRuntime().availableProcessors(),
+                options.resume, options.gridRows, options.gridCols, options.gridRings);
+    }
 
+    /**
+     * @param input a directory, or a glob such as /data/scans/*.tif
+     * @return the matching image files, sorted by name
+     */
+    static File[] inputFiles(String input) {
+        File dir = new File(input);
+        if (dir.isDirectory()) {
+            File[] images = Results.imageFiles(dir);
+            if (images == null) return new File[0];
+            Arrays.sort(images);
+            return images;
+        }
+
+        // Walk from the deepest folder without any glob character
+        int firstGlob = input.length();
+        for (char c : new char[]{'*', '?', '[', '{'}) {
+            int i = input.indexOf(c);
+            if (i >= 0) firstGlob = Math.min(firstGlob, i);
+        }
+        int sep = input.lastIndexOf(File.separatorChar, firstGlob);
+        Path base = Paths.get(sep > 0 ? input.substring(0, sep) : sep == 0 ? File.separator : ".");
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + input);
+        boolean relative = !Paths.get(input).isAbsolute();
+        try (Stream<Path> paths = Files.walk(base)) {
+            return paths.filter(Files::isRegularFile)
+                    .filter(p -> matcher.matches(relative ? p.normalize() : p))
+                    .sorted()
+                    .map(Path::toFile)
+                    .toArray(File[]::new);
+        } catch (IOException e) {
+            IJ.log("Could not read " + base);
+            return new File[0];
+        }
     }
 
     private static void printUsage(OptionsParser parser) {
@@ -1,5 +1,6 @@
 package com.mycompany.imagej;
 
+import com.google.devtools.common.options.Converters;
 import com.google.devtools.common.options.Option;
 import com.google.devtools.common.options.OptionsBase;
 
@@ -11,36 +12,129 @@ public class BatchOptions extends OptionsBase {
             name = "help",
             abbrev = 'h',
             help = "Prints usage info.",
-            defaultValue = "true"
+            defaultValue = "false"
     )
     public boolean help;
 
     @Option(
-            name = "input file",
+            name = "input",
             abbrev = 'i',
-            help = "Input file",
+            help = "Input directory, or glob such as '/data/scans/*.tif'.",
+            category = "startup",
+            defaultValue = ""
+    )
+    public String input;
+
+    @Option(
+            name = "output",
+            abbrev = 'o',
+            help = "Output file for the features of the images: JSON lines if it ends with .jsonl, "
+                    + "CSV otherwise, its tables being written to name.long.csv.",
             category = "startup",
             defaultValue = ""
     )
-    public String inputFile;
+    public String output;
+
+    @Option(
+            name = "threads",
+            abbrev = 't',
+            help = "Number of images analyzed at the same time, 0 for one per core.",
+            category = "startup",
+            defaultValue = "0"
+    )
+    public int threads;
 
     @Option(
-            name = "an integer",
-            abbrev = 'n',
-            help = "An integer.",
+            name = "stage_threads",
+            help = "Number of analyzers of an image run at the same time, 0 for one per core.",
             category = "startup",
-            defaultValue = "42"
+            defaultValue = "0"
     )
-    public int anInt;
+    public int stageThreads;
 
     @Option(
-            name = "aListStrings",
-            abbrev = 'd',
-            help = "A list of strings.",
+            name = "flush",
+            help = "When the output is pushed to the file: image (after each image), rows:n (every n rows) or close.",
             category = "startup",
-            allowMultiple = true,
+            defaultValue = "image"
+    )
+    public String flush;
+
+    @Option(
+            name = "resume",
+            help = "Skip the images already in the output, as recorded in its journal. Use --noresume to start over.",
+            category = "startup",
+            defaultValue = "true"
+    )
+    public boolean resume;
+
+    @Option(
+            name = "scale_pix",
+            help = "Scale, in pixels: the length in pixels of scale_cm. The lengths, positions, areas and volumes "
+                    + "are given in cm; the counts of pixels or nodes, the densities, ratios and angles are not scaled, "
+                    + "and the depthProfile and pixelProfile tables keep one entry per row or band of rows of pixels.",
+            category = "analysis",
+            defaultValue = "1"
+    )
+    public double scalePix;
+
+    @Option(
+            name = "scale_cm",
+            help = "Scale, in cm: the length in cm of scale_pix pixels.",
+            category = "analysis",
+            defaultValue = "1"
+    )
+    public double scaleCm;
+
+    @Option(
+            name = "root_colour",
+            help = "Colour of the roots on the images: black or white.",
+            category = "analysis",
+            defaultValue = "black"
+    )
+    public String rootColour;
+
+    @Option(
+            name = "min_size",
+            help = "Minimum size of the particles kept as roots, in pixels.",
+            category = "analysis",
+            defaultValue = "50"
+    )
+    public double minSize;
+
+    @Option(
+            name = "grid_rows",
+            help = "Number of rows of the density grid over the root system.",
+            category = "analysis",
+            defaultValue = "10"
+    )
+    public int gridRows;
+
+    @Option(
+            name = "grid_cols",
+            help = "Number of columns of the density grid over the root system.",
+            category = "analysis",
+            defaultValue = "10"
+    )
+    public int gridCols;
+
+    @Option(
+            name = "grid_rings",
+            help = "Number of concentric rings of the density grid.",
+            category = "analysis",
+            defaultValue = "4"
+    )
+    public int gridRings;
+
+    @Option(
+            name = "analyzers",
+            abbrev = 'a',
+            help = "Comma separated list of the analyzers to run, the default ones if empty. "
+                    + "skeletonTopology and skeletonGraph, with tables per node and segment, only run when listed.",
+            category = "analysis",
+            converter = Converters.CommaSeparatedOptionListConverter.class,
             defaultValue = ""
     )
-    public List<String> aListStrings;
+    public List<String> analyzers;
 
 }
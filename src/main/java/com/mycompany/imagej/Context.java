@@ -0,0 +1,235 @@
+package com.mycompany.imagej;
+
+import ij.ImagePlus;
+import ij.gui.Roi;
+import ij.measure.ResultsTable;
+import ij.process.ByteProcessor;
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Analysis context of a single image
+ * Carries the preprocessed mask, its skeleton, the ROIs and the results tables through every
+ * stage of RootAnalysis, in place of the ImageJ globals (IJ.getImage(), RoiManager.getInstance(),
+ * Analyzer.setResultsTable()), so that several RootAnalysis can run in the same JVM. The stages
+ * of an image may run at the same time: each artifact is built once, by the first stage asking
+ * for it, and each stage gets its own results table.
+ *
+ * The images shared by the stages (mask, skeleton, EDM) are computed once, on first use, and
+ * handed out as views: each call returns its own ImagePlus and ImageProcessor, free to carry a
+ * ROI or a threshold, over the same pixels. The pixels must not be written; a stage that
+ * modifies the image (the ParticleAnalyzer fills the particles it measures) works on a duplicate.
+ */
+public class Context {
+
+    private final ImagePlus im;
+    private volatile ImagePlus skel;
+    private volatile ImageProcessor edm;
+    private volatile Rectangle bounds;
+    private volatile IntegralImage integral;
+    private volatile Geometry geometry;
+    private volatile SkeletonTopology topology;
+    private volatile RadiusHistogram radii;
+    // One lock per artifact, so that different artifacts are built at the same time
+    private final Object skelLock = new Object(), edmLock = new Object(), boundsLock = new Object(),
+            integralLock = new Object(), geometryLock = new Object(), topologyLock = new Object(),
+            radiiLock = new Object();
+    public List<Roi> rois = Collections.synchronizedList(new ArrayList<>());
+    // Size of the density grid and number of its rings, see DensityGrid
+    public int gridRows = DensityGrid.ROWS;
+    public int gridCols = DensityGrid.COLS;
+    public int gridRings = DensityGrid.RINGS;
+
+    /**
+     * @param im preprocessed mask of the image
+     * @param skel skeleton of the mask, computed on first use if null
+     */
+    Context(ImagePlus im, ImagePlus skel) {
+        this.im = im;
+        this.skel = skel;
+    }
+
+    /**
+     * @return view of the preprocessed mask
+     */
+    public ImagePlus mask() {
+        return view(im, im.getProcessor());
+    }
+
+    /**
+     * @return view of the skeleton of the mask
+     */
+    public ImagePlus skeleton() {
+        if (skel == null) {
+            synchronized (skelLock) {
+                if (skel == null) skel = Preprocess.skeletonize(im);
+            }
+        }
+        return view(skel, skel.getProcessor());
+    }
+
+    /**
+     * @return view of the exact Euclidean distance map of the mask, float, not rounded
+     */
+    public ImagePlus edm() {
+        if (edm == null) {
+            synchronized (edmLock) {
+                if (edm == null) {
+                    ImageProcessor ip = im.getProcessor();
+                    edm = DistanceTransform.edm(ip, ip.isInvertedLut() ? 255 : 0);
+                }
+            }
+        }
+        return view(im, edm);
+    }
+
+    /**
+     * @return histogram of the radius along the skeleton, from the EDM, computed on first use
+     */
+    public RadiusHistogram radiusHistogram() {
+        if (radii == null) {
+            synchronized (radiiLock) {
+                if (radii == null) {
+                    RadiusHistogram h = new RadiusHistogram();
+                    h.compute(edm().getProcessor(), skeleton().getProcessor());
+                    radii = h;
+                }
+            }
+        }
+        return radii;
+    }
+
+    /**
+     * @return bounding box of the foreground of the mask, as selected by Util.createSelection
+     */
+    public Rectangle bounds() {
+        if (bounds == null) {
+            synchronized (boundsLock) {
+                if (bounds == null) bounds = foregroundBounds(im.getProcessor());
+            }
+        }
+        return new Rectangle(bounds);
+    }
+
+    /**
+     * @return summed-area table of the foreground of the mask
+     */
+    public IntegralImage integral() {
+        if (integral == null) {
+            synchronized (integralLock) {
+                if (integral == null) integral = new IntegralImage(im.getProcessor());
+            }
+        }
+        return integral;
+    }
+
+    /**
+     * @return the topology of the skeleton, built on first use
+     */
+    public SkeletonTopology topology() {
+        if (topology == null) {
+            synchronized (topologyLock) {
+                if (topology == null) topology = new SkeletonTopology(skeleton().getProcessor());
+            }
+        }
+        return topology;
+    }
+
+    /**
+     * @param ip the mask
+     * @return bounding box of the foreground
+     */
+    private static Rectangle foregroundBounds(ImageProcessor ip) {
+        int fg = ip.isInvertedLut() ? 255 : 0;
+        int xMin = Integer.MAX_VALUE, yMin = Integer.MAX_VALUE, xMax = -1, yMax = -1;
+        for (int y = 0; y < ip.getHeight(); y++) {
+            for (int x = 0; x < ip.getWidth(); x++) {
+                if (ip.get(x, y) == fg) {
+                    if (x < xMin) xMin = x;
+                    if (x > xMax) xMax = x;
+                    if (y < yMin) yMin = y;
+                    yMax = y;
+                }
+            }
+        }
+        return xMax < 0 ? new Rectangle() : new Rectangle(xMin, yMin, xMax - xMin + 1, yMax - yMin + 1);
+    }
+
+    /**
+     * @return the geometry of the root system, measured on first use
+     */
+    public Geometry geometry() {
+        if (geometry == null) {
+            synchronized (geometryLock) {
+                if (geometry == null) geometry = new Geometry(this);
+            }
+        }
+        return geometry;
+    }
+
+    /**
+     * @return the geometry of the root system, measured on first use
+     */
+    public Geom geom() {
+        return geometry().geo;
+    }
+
+    /**
+     * Build the artifacts ahead of the stages reading them
+     * @param artifacts the artifacts to build
+     */
+    public void build(Set<Stage.Artifact> artifacts) {
+        for (Stage.Artifact a : artifacts) build(a);
+    }
+
+    /**
+     * Build an artifact ahead of the stages reading it
+     * @param artifact the artifact to build
+     */
+    public void build(Stage.Artifact artifact) {
+        switch (artifact) {
+            case SKELETON: skeleton(); break;
+            case EDM: edm(); break;
+            case BOUNDS: bounds(); break;
+            case INTEGRAL: integral(); break;
+            case TOPOLOGY: topology(); break;
+            case RADII: radiusHistogram(); break;
+            case GEOM: geometry(); break;
+            default: break;
+        }
+    }
+
+    /**
+     * @return a new results table, private to the caller
+     */
+    public ResultsTable table() {
+        return new ResultsTable();
+    }
+
+    /**
+     * @param src image giving the title and the calibration
+     * @param ip pixels of the view
+     * @return a new ImagePlus and ImageProcessor over the pixels of ip
+     */
+    static ImagePlus view(ImagePlus src, ImageProcessor ip) {
+        ImageProcessor v;
+        int w = ip.getWidth();
+        int h = ip.getHeight();
+        if (ip instanceof ByteProcessor) {
+            v = new ByteProcessor(w, h, (byte[]) ip.getPixels(), ip.getColorModel());
+        } else if (ip instanceof FloatProcessor) {
+            v = new FloatProcessor(w, h, (float[]) ip.getPixels(), ip.getColorModel());
+        } else {
+            v = ip.duplicate();
+        }
+        ImagePlus imp = new ImagePlus(src.getTitle(), v);
+        imp.setCalibration(src.getCalibration());
+        return imp;
+    }
+}
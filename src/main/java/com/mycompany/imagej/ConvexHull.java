@@ -1,15 +1,13 @@
 package com.mycompany.imagej;
 
-import ij.IJ;
 import ij.ImagePlus;
 import ij.gui.Overlay;
 import ij.gui.PolygonRoi;
 import ij.gui.Roi;
+import ij.gui.Wand;
 import ij.measure.Measurements;
 import ij.measure.ResultsTable;
-import ij.plugin.filter.Analyzer;
 import ij.plugin.filter.ParticleAnalyzer;
-import ij.plugin.frame.RoiManager;
 import ij.process.ImageProcessor;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
@@ -25,15 +23,19 @@ public class ConvexHull {
     public JsonObject jobj = new JsonObject();
     public int nEFD = 30;
 
-    ConvexHull(ImagePlus im0){
-        im = im0.duplicate();
-        ResultsTable rt = new ResultsTable();
+    /**
+     * @param ctx analysis context of the image, the outline of the root system is added to its ROIs
+     */
+    ConvexHull(Context ctx){
+        // Own copy, the ParticleAnalyzer writes to the image
+        im = ctx.mask().duplicate();
+        ResultsTable rt = ctx.table();
 
         // Get bounding box
         im.getProcessor().autoThreshold();
         im.getProcessor().invert();
         ParticleAnalyzer pa = new ParticleAnalyzer(
-                ParticleAnalyzer.ADD_TO_MANAGER |
+                ParticleAnalyzer.RECORD_STARTS |
                 ParticleAnalyzer.CLEAR_WORKSHEET,
                 Measurements.AREA,
                 rt, 0, 10e9);
@@ -49,10 +51,15 @@ public class ConvexHull {
             }
         }
 
-        // Get the convex hull from the ROI manager (the largest object)
-        RoiManager manager = RoiManager.getInstance();
-        Roi[] roiA = manager.getRoisAsArray();
-        select = roiA[index];
+        // Trace the outline of the largest object from its starting point
+        // (this is what the ParticleAnalyzer would add to the ROI manager)
+        int xStart = (int) rt.getValue("XStart", index);
+        int yStart = (int) rt.getValue("YStart", index);
+        double level = im.getProcessor().getPixelValue(xStart, yStart);
+        Wand wand = new Wand(im.getProcessor());
+        wand.autoOutline(xStart, yStart, level, level, Wand.EIGHT_CONNECTED);
+        select = new PolygonRoi(wand.xpoints, wand.ypoints, wand.npoints, Roi.TRACED_ROI);
+        ctx.rois.add(select);
 
         PolygonRoi cv = new PolygonRoi(select.getConvexHull(), Roi.POLYGON);
 
@@ -63,7 +70,6 @@ public class ConvexHull {
 
         // Get shape measurements from the convex hull
         chImage.getProcessor().invert();
-        Analyzer.setResultsTable(rt);
         rt.reset();
         pa = new ParticleAnalyzer(ParticleAnalyzer.CLEAR_WORKSHEET, Measurements.CENTER_OF_MASS |
                 Measurements.AREA, rt, 0, 10e9);
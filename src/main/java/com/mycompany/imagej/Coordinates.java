@@ -1,6 +1,5 @@
 package com.mycompany.imagej;
 
-import ij.IJ;
 import ij.ImagePlus;
 import ij.gui.Overlay;
 import ij.gui.PolygonRoi;
@@ -25,16 +24,14 @@ public class Coordinates {
     public double[] cumulCoord = new double[nCoord];
     public JsonObject jobj = new JsonObject();
 
-    Coordinates(ImagePlus im0, Geom geom) {
-        im = im0.duplicate();
+    /**
+     * @param ctx analysis context of the image
+     */
+    Coordinates(Context ctx) {
+        im = ctx.mask();
         // Get bounding box
-        im.getProcessor().autoThreshold();
-        IJ.run(im, "Create Selection", "");
-
-        Roi select;
-        select = im.getRoi();
         ImageProcessor Shape = im.getProcessor();
-        Shape.setRoi(select.getBounds());
+        Shape.setRoi(ctx.bounds());
         Shape = Shape.crop();
         im.setProcessor(Shape);
         double w = im.getWidth();
@@ -48,7 +45,6 @@ public class Coordinates {
         // Save coordinates
 
         for (int i = 0; i < nCoord; i++) {
-            ImagePlus currentSelection = im.duplicate();
             double factor = (double) i / (nCoord - 1);
 
             double y;
@@ -56,17 +52,14 @@ public class Coordinates {
             else if (i == (nCoord - 1)) y = 0.99 * h;
             else y = factor * h;
 
-            currentSelection.setRoi(new Roi(0, y, w, 3));
-
-            ImageProcessor small = currentSelection.getProcessor();
-            small = small.crop();
+            // Crop the slice directly, without copying the whole image
+            Shape.setRoi(new Roi(0, y, w, 3));
+            ImageProcessor small = Shape.crop();
             small.setAutoThreshold("Li");
-            currentSelection.setProcessor(small);
+            ImagePlus currentSelection = new ImagePlus(im.getTitle(), small);
 
-            IJ.run(currentSelection, "Create Selection", "");
-            ResultsTable rt = new ResultsTable();
-            Analyzer.setResultsTable(rt);
-            rt.reset();
+            Util.createSelection(currentSelection);
+            ResultsTable rt = ctx.table();
             Analyzer an = new Analyzer(currentSelection, Measurements.RECT, rt);
             an.measure();
 
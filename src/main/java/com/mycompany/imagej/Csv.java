@@ -1,14 +1,13 @@
 package com.mycompany.imagej;
 
 import java.io.File;
-import java.io.PrintWriter;
 
 public class Csv {
     public String csvParamFolder, csvParamAnalysis;
     public String tpsFolder, efdFolder;
     public String depthAFolder, depthLFolder, depthDFolder;
-    public PrintWriter pwParam, pwTPS, pwEFD, pwAnalysis;
-    public PrintWriter pwDA, pwDL, pwDD;
+    public RowWriter pwParam, pwTPS, pwEFD, pwAnalysis;
+    public RowWriter pwDA, pwDL, pwDD;
     public String baseName;
     public int nCoord;
     public int nSlices;
@@ -33,7 +32,6 @@ public class Csv {
         String toPrint = "image";
         toPrint = toPrint.concat(",width,height,time_start, time_end");
         pwAnalysis.println(toPrint);
-        pwAnalysis.flush();
     }
 
     /**
@@ -42,7 +40,6 @@ public class Csv {
     private void sendAnalysisToCSV(String image, int width, int height, long time1, long time2){
         String toPrint = image+","+width+","+height+","+time1+","+time2;
         pwAnalysis.println(toPrint);
-        pwAnalysis.flush();
     }
 
     /**
@@ -64,7 +61,6 @@ public class Csv {
         for(int i = 0; i < nCoord; i++) toPrint = toPrint.concat(",cumul_x"+i);
 
         pwParam.println(toPrint);
-        pwParam.flush();
     }
 
     /**
@@ -76,7 +72,6 @@ public class Csv {
         pwTPS.println("LM="+(nCoord*2));
 
         for(int i = 0; i < coordX.length; i++) pwTPS.println(coordX[i]+" "+coordY[i]);
-        pwTPS.flush();
     }
 
     /**
@@ -84,7 +79,6 @@ public class Csv {
      */
     private void printEFDCSVHeader(){
         pwEFD.println("image, index, ax, ay, bx, by, efd");
-        pwEFD.flush();
     }
     /**
      * Send EFD data to an CSV file
@@ -92,8 +86,6 @@ public class Csv {
     private void sendEFDDataToCSV(int i, double ax, double ay, double bx, double by, double efd){
 
         pwEFD.println(baseName +","+ i +","+ ax +","+ ay +","+ bx+","+ by+","+ efd);
-
-        pwEFD.flush();
     }
 
 
@@ -0,0 +1,210 @@
+package com.mycompany.imagej;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Write the features of each image as one CSV row, and its tables in long format
+ * The columns are fixed before the first image, from the outputs of the selected stages, such as
+ * diameter.max: a row only holds single values. The tables, whose length changes from an image to
+ * the next (see Stage.tables), and the features not declared by their stage, are written to a
+ * second file, name.long.csv, one value per line: image, path of the value (such as
+ * tissue.histogram.3.radius) and value. Both files are only appended to.
+ */
+public class CsvSink implements ResultSink {
+
+    static final String VALUES_HEADER = "image,feature,value";
+
+    private RowWriter pw;
+    // Tables, flushed after the rows
+    private RowWriter values;
+    private List<String> columns;
+
+    /**
+     * @param pw      writer of the rows
+     * @param values  writer of the tables
+     * @param columns columns of the rows
+     */
+    CsvSink(RowWriter pw, RowWriter values, List<String> columns) {
+        this.pw = pw;
+        this.values = values;
+        this.columns = columns;
+        // Only flushed with the rows, so that a table is never in the file without its row
+        values.flush = RowWriter.Flush.CLOSE;
+        pw.next = values;
+    }
+
+    /**
+     * @param file   output file
+     * @param append true to add to the rows already in the file
+     * @param stages the stages whose features are written
+     * @return the sink, null if the files could not be created
+     * @throws IllegalStateException if the rows already in the file have other columns
+     */
+    public static CsvSink open(String file, boolean append, List<Stage> stages) {
+        List<String> columns = columns(stages);
+        String header = String.join(",", columns);
+        String valuesFile = valuesFile(file);
+        boolean newRows = !append || !hasHeader(file, header);
+        boolean newValues = !append || !hasHeader(valuesFile, VALUES_HEADER);
+        RowWriter pw = Util.initializeCSV(file, !newRows);
+        if (pw == null) return null;
+        RowWriter values = Util.initializeCSV(valuesFile, !newValues);
+        if (values == null) {
+            pw.close();
+            return null;
+        }
+        if (newRows) pw.println(header);
+        if (newValues) values.println(VALUES_HEADER);
+        return new CsvSink(pw, values, columns);
+    }
+
+    /**
+     * @param file a CSV file, its partial last row dropped
+     * @param header the expected header
+     * @return true if the file starts with the header, false if it is empty or missing
+     * @throws IllegalStateException if the file has another header
+     */
+    private static boolean hasHeader(String file, String header) {
+        RowWriter.trimPartialRow(new File(file));
+        String line = null;
+        try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+            line = br.readLine();
+        } catch (IOException e) {
+            // No previous rows
+        }
+        if (line == null || line.isEmpty()) return false;
+        if (!line.equals(header)) {
+            throw new IllegalStateException("The columns of " + file + " are not the ones of the selected analyzers, "
+                    + "write to a new file or run with --noresume");
+        }
+        return true;
+    }
+
+    /**
+     * @param file output file
+     * @return the file of the tables: name.long.csv for name.csv
+     */
+    static String valuesFile(String file) {
+        return (file.toLowerCase().endsWith(".csv") ? file.substring(0, file.length() - 4) : file) + ".long.csv";
+    }
+
+    /**
+     * @param stages the stages
+     * @return the columns of the rows: the image, then the outputs of each stage that are not tables,
+     * or the name of the stage if its entry is a single value
+     */
+    static List<String> columns(List<Stage> stages) {
+        List<String> columns = new ArrayList<>();
+        columns.add("image");
+        for (Stage stage : stages) {
+            if (stage.outputs().isEmpty()) columns.add(stage.name());
+            for (String output : stage.outputs()) {
+                if (!stage.tables().contains(output)) columns.add(stage.name() + "." + output);
+            }
+        }
+        return columns;
+    }
+
+    @Override
+    public synchronized void write(JsonObject features, Runnable written) {
+        Map<String, String> row = new HashMap<>();
+        Map<String, String> table = new LinkedHashMap<>();
+        split("", features, row, table);
+
+        // The tables first, so that they are in the buffer before the row and its journal entry
+        String image = row.containsKey("image") ? row.get("image") : "";
+        for (Map.Entry<String, String> e : table.entrySet()) {
+            values.println(image + "," + escape(e.getKey()) + "," + e.getValue());
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) sb.append(',');
+            String value = row.get(columns.get(i));
+            if (value != null) sb.append(value);
+        }
+        pw.println(sb.toString(), written);
+        pw.endImage();
+    }
+
+    /**
+     * Split a JSON element into the values of the columns and the values of the tables
+     * @param path path of the element
+     * @param el the element
+     * @param row the values of the columns
+     * @param table the other values, in order
+     */
+    private void split(String path, JsonElement el, Map<String, String> row, Map<String, String> table) {
+        if (columns.contains(path) && (el.isJsonPrimitive() || el.isJsonNull())) {
+            row.put(path, el.isJsonNull() ? "" : escape(el.getAsString()));
+        } else if (el.isJsonObject() && !columns.contains(path)) {
+            String prefix = path.isEmpty() ? "" : path + ".";
+            for (Map.Entry<String, JsonElement> e : el.getAsJsonObject().entrySet()) {
+                split(prefix + e.getKey(), e.getValue(), row, table);
+            }
+        } else {
+            flatten(path, el, table);
+        }
+    }
+
+    /**
+     * @return the writer of the tables, flushed after the rows
+     */
+    @Override
+    public RowWriter writer() {
+        return values;
+    }
+
+    @Override
+    public synchronized void close() {
+        pw.close();
+        values.close();
+    }
+
+    /**
+     * Flatten a JSON element into (path, value) columns
+     * @param path path of the element
+     * @param el the element
+     * @param row the columns, in order
+     */
+    static void flatten(String path, JsonElement el, Map<String, String> row) {
+        String prefix = path.isEmpty() ? "" : path + ".";
+        if (el.isJsonObject()) {
+            for (Map.Entry<String, JsonElement> e : el.getAsJsonObject().entrySet()) {
+                flatten(prefix + e.getKey(), e.getValue(), row);
+            }
+        } else if (el.isJsonArray()) {
+            JsonArray ja = el.getAsJsonArray();
+            for (int i = 0; i < ja.size(); i++) {
+                flatten(prefix + i, ja.get(i), row);
+            }
+        } else if (el.isJsonNull()) {
+            row.put(path, "");
+        } else {
+            row.put(path, escape(el.getAsString()));
+        }
+    }
+
+    /**
+     * @param value a CSV value
+     * @return the value, quoted if needed
+     */
+    static String escape(String value) {
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+}
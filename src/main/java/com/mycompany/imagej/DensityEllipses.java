@@ -2,14 +2,9 @@ package com.mycompany.imagej;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
-import ij.IJ;
 import ij.ImagePlus;
 import ij.gui.OvalRoi;
 import ij.gui.Overlay;
-import ij.measure.Measurements;
-import ij.measure.ResultsTable;
-import ij.plugin.filter.Analyzer;
-import ij.plugin.filter.ParticleAnalyzer;
 
 import java.awt.*;
 
@@ -20,27 +15,21 @@ public class DensityEllipses {
     public OvalRoi[] roi = new OvalRoi[dMod.length];
     public JsonObject jobj = new JsonObject();
 
-    DensityEllipses(ImagePlus im0, Geom geo) {
-        im = im0.duplicate();
+    /**
+     * @param ctx analysis context of the image
+     */
+    DensityEllipses(Context ctx) {
+        im = ctx.mask();
+        Geom geo = ctx.geom();
+        IntegralImage ii = ctx.integral();
 
-        ParticleAnalyzer pa;
-        ResultsTable rt = new ResultsTable();
-        Analyzer.setResultsTable(rt);
-
-        im.getProcessor().autoThreshold();
-        im.getProcessor().invert();
         float areaPrev = 0;
         JsonArray ja = new JsonArray();
         for (int i = 0; i < 4; i++) {
             roi[i] = new OvalRoi(geo.xMid - wMod[i] * geo.width, geo.yMid, dMod[i] * geo.width, dMod[i] * geo.height);
-            im.setRoi(roi[i]);
-            rt.reset();
-            pa = new ParticleAnalyzer(ParticleAnalyzer.CLEAR_WORKSHEET, Measurements.AREA, rt, 0, 10e9, 0, 1);
-            pa.analyze(im);
-            float areaSelection = 0;
-            for (int j = 0; j < rt.getCounter(); j++) {
-                areaSelection += (float) rt.getValue("Area", j);
-            }
+            // Background of the mask within the ellipse, the area of the particles of the inverted mask
+            int[] n = ii.count(roi[i]);
+            float areaSelection = n[1] - n[0];
             double areaProp = (areaSelection - areaPrev) / geo.area;
             ja.add(areaProp);
             areaPrev = areaSelection;
@@ -0,0 +1,87 @@
+package com.mycompany.imagej;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+public class DensityGrid {
+
+    // Default size of the grid and number of rings
+    public static final int ROWS = 10;
+    public static final int COLS = 10;
+    public static final int RINGS = 4;
+
+    public int nRows;
+    public int nCols;
+    public int nRings;
+    public JsonObject jobj = new JsonObject();
+
+    /**
+     * @param ctx analysis context of the image, giving the size of the grid
+     */
+    DensityGrid(Context ctx) {
+        this(ctx, ctx.gridRows, ctx.gridCols, ctx.gridRings);
+    }
+
+    /**
+     * Density of the root system within the cells of a grid over its bounding box, and within
+     * concentric elliptic rings inscribed in the bounding box. The density of a cell or ring is
+     * the fraction of its pixels that are roots. Every region is counted from the summed-area
+     * table of the mask, so the cost does not depend on its size.
+     * @param ctx analysis context of the image
+     * @param nRows number of rows of the grid
+     * @param nCols number of columns of the grid
+     * @param nRings number of rings
+     */
+    DensityGrid(Context ctx, int nRows, int nCols, int nRings) {
+        this.nRows = nRows;
+        this.nCols = nCols;
+        this.nRings = nRings;
+        Geom geo = ctx.geom();
+        IntegralImage ii = ctx.integral();
+        int x0 = (int) geo.bX;
+        int y0 = (int) geo.bY;
+        int w = (int) geo.width;
+        int h = (int) geo.height;
+
+        // Grid, row by row from the top
+        JsonArray grid = new JsonArray();
+        for (int r = 0; r < nRows; r++) {
+            int top = y0 + (int) ((long) r * h / nRows);
+            int bottom = y0 + (int) ((long) (r + 1) * h / nRows);
+            JsonArray row = new JsonArray();
+            for (int c = 0; c < nCols; c++) {
+                int left = x0 + (int) ((long) c * w / nCols);
+                int right = x0 + (int) ((long) (c + 1) * w / nCols);
+                int size = (right - left) * (bottom - top);
+                row.add(density(ii.count(left, top, right - left, bottom - top), size));
+            }
+            grid.add(row);
+        }
+        jobj.add("grid", grid);
+
+        // Rings, from the center of the bounding box outwards
+        JsonArray rings = new JsonArray();
+        double cx = x0 + w / 2.0;
+        double cy = y0 + h / 2.0;
+        int[] inner = {0, 0};
+        for (int k = 1; k <= nRings; k++) {
+            int[] outer = ii.count(cx, cy, k * w / (2.0 * nRings), k * h / (2.0 * nRings));
+            rings.add(density(outer[0] - inner[0], outer[1] - inner[1]));
+            inner = outer;
+        }
+        jobj.add("rings", rings);
+    }
+
+    /**
+     * @param count foreground of the region
+     * @param size pixels of the region
+     * @return fraction of the region that is foreground, 0 for an empty region
+     */
+    static double density(int count, int size) {
+        return size > 0 ? (double) count / size : 0;
+    }
+
+    private static double density(int[] count, int size) {
+        return density(count[0], size);
+    }
+}
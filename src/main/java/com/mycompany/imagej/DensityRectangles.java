@@ -1,14 +1,9 @@
 package com.mycompany.imagej;
 
-import ij.IJ;
 import ij.ImagePlus;
 import ij.gui.OvalRoi;
 import ij.gui.Overlay;
 import ij.gui.Roi;
-import ij.measure.Measurements;
-import ij.measure.ResultsTable;
-import ij.plugin.filter.Analyzer;
-import ij.plugin.filter.ParticleAnalyzer;
 import ij.process.ImageProcessor;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonArray;
@@ -26,30 +21,20 @@ public class DensityRectangles {
 
     /**
      *
-     * @param im0 input image
-     * @param geo Geom object
+     * @param ctx analysis context of the image
      */
-    DensityRectangles(ImagePlus im0, Geom geo) {
-        im = im0.duplicate();
+    DensityRectangles(Context ctx) {
+        im = ctx.mask();
+        Geom geo = ctx.geom();
         ip = im.getProcessor();
-        ResultsTable rt = new ResultsTable();
-        Analyzer.setResultsTable(rt);
-        ParticleAnalyzer pa;
+        IntegralImage ii = ctx.integral();
 
-        im.getProcessor().autoThreshold();
-        im.getProcessor().invert();
         JsonArray ja = new JsonArray();
         for (int i = 0; i < dMod.length; i++) {
             roi[i] = new Roi(geo.xMid - 0.5 * geo.width, geo.yMid + (dMod[i] * geo.height), geo.width, 0.2 * geo.height);
-            im.setRoi(roi[i]);
-            rt.reset();
-            pa = new ParticleAnalyzer(ParticleAnalyzer.CLEAR_WORKSHEET, Measurements.AREA, rt, 0, 10e9, 0, 1);
-            pa.analyze(im);
-
-            double ar1 = 0;
-            for (int j = 0; j < rt.getCounter(); j++) {
-                ar1 += rt.getValue("Area", j);
-            }
+            // Background of the mask within the rectangle, the area of the particles of the inverted mask
+            int[] n = ii.count(roi[i]);
+            double ar1 = n[1] - n[0];
             ja.add(ar1/geo.area);
         }
         jobj.add("densityRectangles", ja);
@@ -57,8 +42,6 @@ public class DensityRectangles {
 
     public ImagePlus overlay() {
         //Create rectangles overlay
-
-        im.getProcessor().invert();
         for (Roi el: roi) {
             el.setStrokeColor(Color.blue);
             el.setStrokeWidth(5);
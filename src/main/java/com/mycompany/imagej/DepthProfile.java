@@ -2,7 +2,6 @@ package com.mycompany.imagej;
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
-import ij.IJ;
 import ij.ImagePlus;
 import ij.process.ImageProcessor;
 
@@ -11,19 +10,23 @@ public class DepthProfile {
     public ImagePlus im;
     public JsonObject jobj = new JsonObject();
 
-    DepthProfile(ImagePlus im, ImagePlus sk){
+    /**
+     * @param ctx analysis context of the image
+     */
+    DepthProfile(Context ctx){
+        im = ctx.mask();
         ImageProcessor ip = im.getProcessor();
-        ip.autoThreshold();
+        byte[] pixels = Line.pixels(ip);
 
         JsonArray jline = new JsonArray();
         for (int h = 0; h < ip.getHeight(); h++) {
-            int n = Line.count(ip, h);
+            int n = Line.count(pixels, ip.getWidth(), h);
             jline.add(n);
         }
 
         JsonArray jextent = new JsonArray();
         for (int h = 0; h < ip.getHeight(); h++) {
-            int n = Line.extent(ip, h);
+            int n = Line.extent(pixels, ip.getWidth(), h);
             jextent.add(n);
         }
 
@@ -1,13 +1,7 @@
 package com.mycompany.imagej;
 
-import ij.IJ;
 import ij.ImagePlus;
-import ij.plugin.filter.EDM;
-import ij.plugin.ImageCalculator;
 import ij.process.ImageProcessor;
-import ij.measure.ResultsTable;
-import ij.plugin.filter.Analyzer;
-import ij.measure.Measurements;
 
 import ij.gui.Roi;
 import ij.gui.OvalRoi;
@@ -35,42 +29,53 @@ class Diameter {
 
     /**
      * Find max diameter, main stem, and root extents
-     * @param im0 = original image
-     * @param skel = skeleton image
+     * Two row-major passes over the pixels of the EDM, with the walk up the stem in between:
+     * the first pass finds the deepest point and the max and mean radius along the skeleton,
+     * the second one the largest lateral and radial extents of the roots from the top of the stem.
+     * The EDM is exact, not rounded, so the radius is sub-pixel; its mode is taken over the radius
+     * rounded to the closest integer, from the RadiusHistogram of the image. The infinite distances
+     * of a mask without background are left out of both the deepest point and the radius.
+     * The ties are broken as the former column-major scans did: the smallest x, then the smallest y.
+     * @param ctx = analysis context of the image
      */
-    Diameter(ImagePlus im0, ImagePlus skel){
-        im = im0.duplicate();
-
-        EDM edm = new EDM();
-		ImageCalculator ic = new ImageCalculator();
+    Diameter(Context ctx){
+        ImagePlus skel = ctx.skeleton();
 		
-		// Create EDM mask
-		ip = this.im.getProcessor();
-		ip.autoThreshold();
-		//ip.invert();
-
-		edm.run(ip);
-		im.setProcessor(ip);
-
-        // Frankie: added this to show result of EDM
-        // ImageProcessor imdp2 = ip.duplicate();
-        // ImagePlus ipd2 = new ImagePlus("edm.run", imdp2);
-        // ipd2.show();
+		// EDM mask, shared with the other stages
+		im = ctx.edm();
+		ip = im.getProcessor();
+        int width = ip.getWidth();
+        int height = ip.getHeight();
+        float[] edm = DistanceTransform.pixels(ip);
+        byte[] skeleton = Line.pixels(skel.getProcessor());
 
         //----------------------------------------------------------------------
         // Max lateral and radial
 
         // Step 1: Search for main stem 
-        int max = -1;
+        float max = -1;
         // 1. a) Find the "deepest" point (wmax, hmax)
-        for(int w = 0; w < ip.getWidth(); w++){
-	    	for(int h = 0; h < ip.getHeight(); h++){
-                int gray = ip.get(w,h);
-	    		if(gray > max){
+        //       and the max and mean radius along the skeleton, where it is above 0
+        int count = 0;
+        double sum = 0;
+        float edmMax = 0;
+        // Without any background, the distances are infinite and left out, as in RadiusHistogram:
+        // the deepest point stays at (0, 0)
+        for (int h = 0; h < height; h++) {
+            int offset = h * width;
+            for (int w = 0; w < width; w++) {
+                float gray = edm[offset + w];
+                if (Float.isInfinite(gray)) continue;
+                if (gray > max || (gray == max && w < wmax)) {
                     max = gray;
                     wmax = w;
                     hmax = h;
                 }
+                if (gray > 0 && skeleton[offset + w] != 0) {
+                    count++;
+                    sum += gray;
+                    if (gray > edmMax) edmMax = gray;
+                }
             }
         }
 
@@ -84,14 +89,13 @@ class Diameter {
         for (int h = hinit; h >= 0 ; h--) {
             int wleft = 0;
             int wright = 0;
+            int offset = h * width;
 
             for (int w = winit; w >=0; w--) { // walk left
-                int gray = ip.get(w, h);
-                if (gray == 0) break; else wleft = w;
+                if (edm[offset + w] == 0) break; else wleft = w;
             }
-            for (int w = winit; w < ip.getWidth(); w++) { // walk right
-                int gray = ip.get(w, h);
-                if (gray == 0) break; else wright = w;
+            for (int w = winit; w < width; w++) { // walk right
+                if (edm[offset + w] == 0) break; else wright = w;
             }
             
             int dia = wright - wleft;
@@ -105,20 +109,19 @@ class Diameter {
         }
 
         // Step 2: Find the max lateral radius and overl radius
-
-        // Find the max lateral radius and max radius
-        for(int w = 0; w < ip.getWidth(); w++){
-	    	for(int h = 0; h < ip.getHeight(); h++){
-                int gray = ip.get(w, h);
-                if (gray > 0) {
+        for (int h = 0; h < height; h++) {
+            int offset = h * width;
+            for (int w = 0; w < width; w++) {
+                float gray = edm[offset + w];
+                if (gray != 0) {
                     int curLateral = Math.abs(w - winit);
-                    if (curLateral > maxLateral) {
+                    if (curLateral > maxLateral || (curLateral == maxLateral && maxLateral > 0 && w < maxLateralX)) {
                         maxLateral = curLateral;
                         maxLateralX = w;
                         maxLateralY = h;
                     }
                     int curRadial = curLateral * curLateral + (h - hinit) * (h - hinit);
-                    if (curRadial > maxRadial) {
+                    if (curRadial > maxRadial || (curRadial == maxRadial && maxRadial > 0 && w < maxRadialX)) {
                         maxRadial = curRadial;
                         maxRadialX = w;
                         maxRadialY = h;
@@ -128,27 +131,21 @@ class Diameter {
         }
 
         //----------------------------------------------------------------------
-        // Continue the regular script
-        
-        // Create EDM Skeleton
-		im = ic.run("AND create", im, skel);
-
-        // Frankie: added
-        // ImagePlus ipd3 = new ImagePlus("AND create", im.getProcessor());
-        // ipd3.show();
-
-        // Apply threshold
-		IJ.setThreshold(im, 1, 255);
-		IJ.run(im, "Create Selection", "");
-        ResultsTable rt = new ResultsTable();
-		Analyzer an = new Analyzer(im, Measurements.MODE | Measurements.MEAN | Measurements.MIN_MAX , rt);
-        Analyzer.setResultsTable(rt);
-		rt.reset();
-		an.measure();
-
-        jobj.addProperty("max", rt.getValue("Max", 0));
-        jobj.addProperty("mean", rt.getValue("Mean", 0));
-        jobj.addProperty("mode", rt.getValue("Mode", 0));
+        // Mode of the radius along the skeleton, from the histogram shared with Tissue
+        // (its first bin also counts the pixels off the skeleton, it is left out)
+        RadiusHistogram hist = ctx.radiusHistogram();
+        int mode = 0;
+        int maxCount = 0;
+        for (int i = 1; i <= hist.max; i++) {
+            if (hist.count[i] > maxCount) {
+                maxCount = hist.count[i];
+                mode = i;
+            }
+        }
+
+        jobj.addProperty("max", (double) edmMax);
+        jobj.addProperty("mean", count > 0 ? sum / count : 0);
+        jobj.addProperty("mode", (double) mode);
         jobj.addProperty("winit", winit);
         jobj.addProperty("hinit", hinit);
         jobj.addProperty("maxLateral", maxLateral);
@@ -28,6 +28,10 @@ import java.awt.Point;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionListener;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
 
 import javax.swing.JFrame;
 import javax.swing.JPanel;
@@ -230,6 +234,31 @@ public class Directionality implements PlugIn {
 	/** How many sigmas away from the gaussian center we sum to get the amount value. */ 
 	private static final double SIGMA_NUMBER = 2;
 	private static final String PLUGIN_NAME = "Directionality analysis";
+	// 5x5 Sobel filters of the local gradient orientation, as for Convolver: row by row
+	private static final float[] SOBEL_X = new float[] {
+			2f, 	3f, 	4f, 	3f, 	2f,
+			1f, 	2f, 	3f, 	2f, 	1f,
+			0, 		0, 		0, 		0, 		0,
+			-1f, 	-2f, 	-3f, 	-2f, 	-1f,
+			-2f, 	-3f, 	-4f, 	-3f, 	-2f		};
+	private static final float[] SOBEL_Y = new float[] {
+			-2f,  	-1f, 	0f, 	1f, 	2f,
+			-3f,  	-2f,  	0f, 	2f, 	3f,
+			-4f, 	-3f, 	0f, 	3f, 	4f,
+			-3f,  	-2f,  	0f, 	2f, 	3f,
+			-2f,  	-1f,  	0f, 	1f, 	2f		} ; // That's gx, but we want to have a 90 degrees shift, to comply to the rest of the plugin
+	// Number of rows of the image handled by a task of the local gradient orientation
+	private static final int GRADIENT_BAND = 32;
+	/** How many sets of Fourier fields (window, polar matrices and filters) are kept between runs. */
+	private static final int FOURIER_CACHE_SIZE = 8;
+	/** The Fourier fields of the last sizes analyzed, the least recently used one evicted first. */
+	private static final Map<String, FourierFields> fourier_cache = new LinkedHashMap<String, FourierFields>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, FourierFields> eldest) {
+			return size() > FOURIER_CACHE_SIZE;
+		}
+	};
 	private static final String VERSION_STR = "2.0.1";
 	
 	
@@ -267,6 +296,8 @@ public class Directionality implements PlugIn {
 	private boolean build_orientation_map = false;
 	/** If true, will display a color wheel to interpret the orientation map. */
 	private boolean display_color_wheel = false;
+	/** If true, the local gradient orientation skips the blocks of the image in a uniform neighbourhood. */
+	private boolean skip_flat_blocks = true;
 
 
 	/* STD FIELDS */
@@ -283,7 +314,6 @@ public class Directionality implements PlugIn {
 	/** The directionality histogram, one array per processor (3 in the case of a ColorProcessor).*/
 	protected ArrayList<double[]> histograms;
 	
-	private FloatProcessor padded_square_block; 
 	private float[] window_pixels;
 	/** Store fit results when fit method is called. */
 	protected ArrayList<double[]> params_from_fit;
@@ -495,20 +525,8 @@ public class Directionality implements PlugIn {
 		if (null == histograms) 
 			return null;
 		
-		// Wrap shifting angle to [-90  90[
-		double wrapped_angle = ((bin_start+90)  % 180 + 180) % 180 - 90;
-		int wrap_index = 0;
-		for (int i = 0; i < bins.length; i++) {
-			if (wrapped_angle <= Math.toDegrees(bins[i])) {
-				wrap_index = i;
-				break;				
-			}
-		}
-		
-		double[] wrapped_bins = new double[nbins];
-		for (int i = 0; i < wrapped_bins.length; i++) {
-			wrapped_bins[i] = Math.toDegrees(bins[wrap_index] + (bins[1]-bins[0])*i);
-		}
+		final int wrap_index = getWrapIndex();
+		final double[] wrapped_bins = getWrappedBins(wrap_index);
 		
 		ResultsTable table = new ResultsTable();
 		table.setPrecision(9);
@@ -541,6 +559,52 @@ public class Directionality implements PlugIn {
 		return table;		
 	}
 	
+	/**
+	 * Return the result of the analysis of one slice, in the order of the rows of the 
+	 * {@link #displayResultsTable()}, as primitive arrays. Unlike the table, this needs
+	 * no ImageJ window nor table, and can be called from any thread.
+	 * 
+	 * @param index  the index of the slice (or channel), as in {@link #getHistograms()}
+	 * @return  the result, null if the method {@link this.computesHistograms()} was not called before.
+	 */
+	public SliceResult getResult(int index) {
+		if (null == histograms) 
+			return null;
+		
+		final int wrap_index = getWrapIndex();
+		final double[] dir = histograms.get(index);
+		final double[] histogram = new double[nbins];
+		System.arraycopy(dir, wrap_index, histogram, 0, nbins - wrap_index);
+		System.arraycopy(dir, 0, histogram, nbins - wrap_index, wrap_index);
+		final double[] fit = null == params_from_fit ? null : params_from_fit.get(index).clone();
+		return new SliceResult(getWrappedBins(wrap_index), histogram, fit);
+	}
+	
+	/**
+	 * @return  the index of the first bin after the histogram start, wrapped to [-90  90[
+	 */
+	private int getWrapIndex() {
+		double wrapped_angle = ((bin_start+90)  % 180 + 180) % 180 - 90;
+		for (int i = 0; i < bins.length; i++) {
+			if (wrapped_angle <= Math.toDegrees(bins[i])) {
+				return i;
+			}
+		}
+		return 0;
+	}
+	
+	/**
+	 * @param wrap_index  the index of the first bin, as given by {@link #getWrapIndex()}
+	 * @return  the bin centers in degrees, starting from this bin
+	 */
+	private double[] getWrappedBins(int wrap_index) {
+		double[] wrapped_bins = new double[nbins];
+		for (int i = 0; i < wrapped_bins.length; i++) {
+			wrapped_bins[i] = Math.toDegrees(bins[wrap_index] + (bins[1]-bins[0])*i);
+		}
+		return wrapped_bins;
+	}
+	
 	/**
 	 * Return the result of analyzing the gaussian fit of the peak.
 	 * Results are returned in the shape of an ArrayList of double[], one element
@@ -883,6 +947,14 @@ public class Directionality implements PlugIn {
 		this.build_orientation_map = flag;
 	}
 
+	/**
+	 * Set the flag skipping the uniform blocks in the local gradient orientation, on by default.
+	 * The histogram is the same either way; see DirectionalityBenchmark for the time it saves.
+	 */
+	public void setSkipFlatBlocksFlag(boolean flag) {
+		this.skip_flat_blocks = flag;
+	}
+
 	/**
 	 * Return the orientation map as an {@link ImageStack}, one slice per slice in the source image.
 	 * Return null if the orientation map flag was not set, or if computation was not done.  
@@ -997,19 +1069,37 @@ public class Directionality implements PlugIn {
 		// Computes power of 2 image dimension
 		pad_size = 2;
         while(pad_size<small_side) pad_size *= 2;
-		padded_square_block = new FloatProcessor(pad_size, pad_size);
 		
-		// Prepare windowing
-		window = getBlackmanProcessor(small_side, small_side);
+		// The window, polar coordinates and filters only depend on the sizes and the number of bins,
+		// they are shared by the runs with the same ones. They are never modified once built.
+		final String key = pad_size + "_" + small_side + "_" + nbins;
+		FourierFields fields;
+		synchronized (fourier_cache) {
+			fields = fourier_cache.get(key);
+		}
+		if (fields == null) {
+			// Prepare windowing
+			window = getBlackmanProcessor(small_side, small_side);
+			
+			// Prepare polar coordinates
+			r = makeRMatrix(pad_size, pad_size);
+			theta = makeThetaMatrix(pad_size, pad_size);
+			
+			// Prepare filters
+			filters = makeFftFilters();
+			
+			fields = new FourierFields(window, r, theta, filters);
+			synchronized (fourier_cache) {
+				fourier_cache.put(key, fields);
+			}
+		} else {
+			window = fields.window;
+			r = fields.r;
+			theta = fields.theta;
+			filters = fields.filters;
+		}
 		window_pixels = (float[]) window.getPixels();
 		
-		// Prepare polar coordinates
-		r = makeRMatrix(pad_size, pad_size);
-		theta = makeThetaMatrix(pad_size, pad_size);
-		
-		// Prepare filters
-		filters = makeFftFilters();
-		
 		if (debug) {
 			new ImagePlus("Angular filters", filters).show();
 		}
@@ -1028,55 +1118,40 @@ public class Directionality implements PlugIn {
 	 *  
 	 */
 	final double[] local_gradient_orientation(final FloatProcessor ip) {
-//		double[] dir = new double[nbins]; // histo with #bins
-		final double[] norm_dir = new double[nbins]; // histo from -pi to pi;
-		final FloatProcessor grad_x = (FloatProcessor) ip.duplicate();
-		final FloatProcessor grad_y = (FloatProcessor) ip.duplicate();
-		final Convolver convolver = new Convolver();
-		final float[] kernel_y = new float[] { 
-				-2f,  	-1f, 	0f, 	1f, 	2f,
-				-3f,  	-2f,  	0f, 	2f, 	3f,
-				-4f, 	-3f, 	0f, 	3f, 	4f,
-				-3f,  	-2f,  	0f, 	2f, 	3f,
-				-2f,  	-1f,  	0f, 	1f, 	2f		} ; // That's gx, but we want to have a 90º shift, to comply to the rest of the plugin
-		final float[] kernel_x = new float[] {
-				2f, 	3f, 	4f, 	3f, 	2f,
-				1f, 	2f, 	3f, 	2f, 	1f,
-				0, 		0, 		0, 		0, 		0,
-				-1f, 	-2f, 	-3f, 	-2f, 	-1f,
-				-2f, 	-3f, 	-4f, 	-3f, 	-2f		};
+		final int width = ip.getWidth();
+		final int height = ip.getHeight();
+		final float[] pixels = (float[]) ip.getPixels();
+		// The orientation and the norm of each pixel are only kept for the orientation map
+		final float[] pixels_theta = build_orientation_map ? new float[pixels.length] : null;
+		final float[] pixels_r = build_orientation_map ? new float[pixels.length] : null;
 
-		convolver.convolveFloat(grad_x, kernel_x, 5, 5);
-		convolver.convolveFloat(grad_y, kernel_y, 5, 5);
-		
-		final float[] pixels_gx = (float[]) grad_x.getPixels();
-		final float[] pixels_gy = (float[]) grad_y.getPixels();
-		final float[] pixels_theta = new float[pixels_gx.length];
-		final float[] pixels_r = new float[pixels_gx.length];
-		
-		double norm, max_norm = 0.0;
-		double angle;
-		int histo_index;
-		float dx, dy;
-		for (int i = 0; i < pixels_gx.length; i++) {
-			dx = pixels_gx[i];
-			dy =  - pixels_gy[i]; // upright orientation
-			norm = dx*dx+dy*dy; // We keep the square so as to have the same dimension that Fourier components analysis
-			if (norm > max_norm) { 
-				max_norm = norm;
-			}
-			angle = Math.atan(dy/dx);
-			pixels_theta[i] = (float) (angle * 180.0 / Math.PI); // deg, -90º to 90º
-			pixels_r[i] = (float) norm;
-			histo_index = (int) ((nbins/2.0) * (1 + angle / (Math.PI/2)) ); // where to put it
-			if (histo_index == nbins) {
-				histo_index = 0; // circular shift in case of exact vertical orientation
+		// Blocks of 8 x 8 pixels in a uniform neighbourhood have no gradient, and are skipped
+		final int flat_width = (width + (1 << Pyramid.LEVELS) - 1) >> Pyramid.LEVELS;
+		final boolean[] flat = skip_flat_blocks ? new Pyramid(pixels, width, height, Pyramid.LEVELS).flat(Pyramid.LEVELS)
+				: new boolean[flat_width * ((height + (1 << Pyramid.LEVELS) - 1) >> Pyramid.LEVELS)];
+
+		// Bands of rows, each with its own histogram (histo from -pi to pi) and maximum norm,
+		// merged in order once all are done
+		final int nbands = (height + GRADIENT_BAND - 1) / GRADIENT_BAND;
+		final double[][] partial = new double[nbands][];
+		final double[] partial_max = new double[nbands];
+		IntStream.range(0, nbands).parallel().forEach(b -> {
+			final double[] histo = new double[nbins];
+			partial_max[b] = gradient_band(pixels, width, height, b * GRADIENT_BAND,
+					Math.min(height, (b + 1) * GRADIENT_BAND), flat, flat_width, histo, pixels_theta, pixels_r);
+			partial[b] = histo;
+		});
+
+		final double[] norm_dir = new double[nbins];
+		double max_norm = 0.0;
+		for (int b = 0; b < nbands; b++) {
+			for (int j = 0; j < nbins; j++) {
+				norm_dir[j] += partial[b][j];
 			}
-			norm_dir[histo_index] += norm; // we put the norm, the stronger the better
+			max_norm = Math.max(max_norm, partial_max[b]);
 		}
 		
 		if (build_orientation_map) {
-			final float[] pixels = (float[]) ip.getPixels();
 			float max_brightness = Float.NEGATIVE_INFINITY;
 			float min_brightness = Float.POSITIVE_INFINITY;
 			
@@ -1103,6 +1178,84 @@ public class Directionality implements PlugIn {
 		return norm_dir;
 	}
 
+	/**
+	 * Gradient orientation of a band of rows, both 5x5 Sobel filters applied in the same pass.
+	 * The filters are computed as {@link Convolver#convolveFloat(ImageProcessor, float[], int, int)} does
+	 * (the edges are repeated outside of the image), and the pixels without gradient, which add nothing
+	 * to the histogram, are skipped, as are the blocks of the pyramid of the image in a uniform neighbourhood.
+	 * 
+	 * @param pixels  the image
+	 * @param y0  first row of the band
+	 * @param y1  end (excluded) of the band
+	 * @param flat  for each block of the coarsest level of the pyramid, true if its neighbourhood is uniform
+	 * @param flat_width  number of blocks in a row
+	 * @param histo  the histogram of the band, the square of the norm for each orientation
+	 * @param pixels_theta  where the orientation of each pixel is written, if not null
+	 * @param pixels_r  where the square of the norm of each pixel is written, if not null
+	 * @return  the maximum square of the norm in the band
+	 */
+	private double gradient_band(final float[] pixels, final int width, final int height, final int y0, final int y1,
+			final boolean[] flat, final int flat_width, final double[] histo, final float[] pixels_theta, final float[] pixels_r) {
+		double norm, max_norm = 0.0;
+		double angle;
+		int histo_index;
+		float dx, dy;
+		for (int y = y0; y < y1; y++) {
+			final boolean edge_row = y < 2 || y >= height - 2;
+			final int flat_offset = (y >> Pyramid.LEVELS) * flat_width;
+			for (int x = 0; x < width; x++) {
+				if (flat[flat_offset + (x >> Pyramid.LEVELS)]) {
+					// No gradient up to the end of the block
+					final int x1 = Math.min(width, ((x >> Pyramid.LEVELS) + 1) << Pyramid.LEVELS);
+					if (pixels_theta != null) {
+						Arrays.fill(pixels_theta, y * width + x, y * width + x1, Float.NaN);
+					}
+					x = x1 - 1;
+					continue;
+				}
+				double sum_x = 0.0, sum_y = 0.0;
+				int k = 0;
+				if (edge_row || x < 2 || x >= width - 2) {
+					for (int v = -2; v <= 2; v++) {
+						final int offset = Math.max(0, Math.min(height - 1, y + v)) * width;
+						for (int u = -2; u <= 2; u++, k++) {
+							final float p = pixels[offset + Math.max(0, Math.min(width - 1, x + u))];
+							sum_x += p * SOBEL_X[k];
+							sum_y += p * SOBEL_Y[k];
+						}
+					}
+				} else {
+					for (int v = -2; v <= 2; v++) {
+						final int offset = x + (y + v) * width;
+						for (int u = -2; u <= 2; u++, k++) {
+							final float p = pixels[offset + u];
+							sum_x += p * SOBEL_X[k];
+							sum_y += p * SOBEL_Y[k];
+						}
+					}
+				}
+				dx = (float) sum_x;
+				dy =  - (float) sum_y; // upright orientation
+				norm = dx*dx+dy*dy; // We keep the square so as to have the same dimension that Fourier components analysis
+				if (norm > max_norm) { 
+					max_norm = norm;
+				}
+				if (pixels_r != null) {
+					pixels_theta[y * width + x] = (float) (Math.atan(dy/dx) * 180.0 / Math.PI); // deg, -90 to 90
+					pixels_r[y * width + x] = (float) norm;
+				}
+				if (norm == 0) continue;
+				angle = Math.atan(dy/dx);
+				histo_index = (int) ((nbins/2.0) * (1 + angle / (Math.PI/2)) ); // where to put it
+				if (histo_index == nbins) {
+					histo_index = 0; // circular shift in case of exact vertical orientation
+				}
+				histo[histo_index] += norm; // we put the norm, the stronger the better
+			}
+		}
+		return max_norm;
+	}
+
 	/**
 	 * This method implements the Fourier component analysis method. The method {@link #initFourierFields()}
 	 * must be called before this method is.
@@ -1116,167 +1269,163 @@ public class Directionality implements PlugIn {
 	 */
 	final double[] fourier_component(FloatProcessor ip) {
 		final Roi original_square = new Roi((pad_size-small_side)/2, (pad_size-small_side)/2, small_side, small_side); 
-				
-		float[] fpx, spectrum_px;
+		final int nblocks = npadx*npady;
 		final double[] dir = new double[nbins];
-		ImageProcessor square_block;
-		Roi square_roi;
-		FHT fft, pspectrum;		
-		FloatProcessor small_pspectrum;
-		
-		ImageStack spectra = null;
-		if (debug) {
-			spectra = new ImageStack(small_side, small_side);			
-		}
 		
-		FloatProcessor[] hue_arrays = null, saturation_arrays = null;
-		if (build_orientation_map) {
-			hue_arrays = new FloatProcessor[npadx*npady];
-			saturation_arrays = new FloatProcessor[npadx*npady];
-		}
-				
-		// Overall maximum of the weights
-		float max_norm =0.0f;
 		// If the image is not square, split it in small square padding all the image
+		final ImageProcessor[] square_blocks = new ImageProcessor[nblocks];
 		for (int ix = 0; ix<npadx; ix++) {
-			
 			for (int iy = 0; iy<npady; iy++) {
-				
 				// Extract a square block from the image
-				square_roi = new Roi( ix*step, iy*step, small_side, small_side );
-				ip.setRoi(square_roi);
-				square_block = ip.crop();
-				
-				// Window the block
-				float[] block_pixels = (float[]) square_block.getPixels();
-				for (int i = 0; i < block_pixels.length; i++) {
-					block_pixels[i] *= window_pixels[i]; 
+				ip.setRoi(new Roi( ix*step, iy*step, small_side, small_side ));
+				square_blocks[ix+npadx*iy] = ip.crop();
+			}
+		}
+		
+		// The FFT and power spectrum of each block, in parallel
+		final FHT[] ffts = new FHT[nblocks];
+		final float[][] spectra_px = new float[nblocks][];
+		final FloatProcessor[] small_pspectra = debug ? new FloatProcessor[nblocks] : null;
+		IntStream.range(0, nblocks).parallel().forEach(block -> {
+			// Window the block
+			float[] block_pixels = (float[]) square_blocks[block].getPixels();
+			for (int i = 0; i < block_pixels.length; i++) {
+				block_pixels[i] *= window_pixels[i]; 
+			}
+			
+			// Pad the block with a power of 2 size, in a processor of this task
+			FloatProcessor padded_square_block = new FloatProcessor(pad_size, pad_size);
+			padded_square_block.insert(square_blocks[block], (pad_size-small_side)/2, (pad_size-small_side)/2);
+			
+			// Computes its FFT
+			FHT fft = new FHT(padded_square_block);
+			fft.setShowProgress(false);
+			fft.transform();
+			fft.swapQuadrants();
+			
+			// Get a centered power spectrum with right size
+			FHT pspectrum = fft.conjugateMultiply(fft);
+			spectra_px[block] = (float[]) pspectrum.getPixels();
+			if (debug) {
+				pspectrum.setRoi(original_square);
+				small_pspectra[block] = (FloatProcessor) pspectrum.crop();
+			}
+			if (build_orientation_map) {
+				ffts[block] = fft;
+			}
+		});
+		
+		if (debug) {
+			final ImageStack spectra = new ImageStack(small_side, small_side);
+			for (int ix = 0; ix<npadx; ix++) {
+				for (int iy = 0; iy<npady; iy++) {
+					spectra.addSlice("block nbr "+(ix+1)*(iy+1), displayLog(small_pspectra[ix+npadx*iy]));
 				}
-				
-				// Pad the block with a power of 2 size
-				padded_square_block.setValue(0.0);
-				padded_square_block.fill();
-				padded_square_block.insert(square_block, (pad_size-small_side)/2, (pad_size-small_side)/2);
-				
-				// Computes its FFT
-				fft = new FHT(padded_square_block);
-				fft.setShowProgress(false);
-				fft.transform();
-				fft.swapQuadrants();
-				
-				// Get a centered power spectrum with right size
-				pspectrum = fft.conjugateMultiply(fft);
-				pspectrum .setRoi(original_square);
-				small_pspectrum = (FloatProcessor) pspectrum.crop();
-				spectrum_px = (float[]) pspectrum.getPixels(); //small_pspectrum.getPixels(); 
-				
-				if (debug) {
-					spectra.addSlice("block nbr "+(ix+1)*(iy+1), displayLog(small_pspectrum));
+			}
+			new ImagePlus("Log10 power FFT of "+makeNames()[slice_index], spectra).show();
+		}
+		
+		// Angular density of each bin, in parallel. The blocks are summed in the same order 
+		// as they are extracted, so that the histogram does not depend on the number of threads.
+		IntStream.range(0, nbins).parallel().forEach(bin -> {
+			// Get filter pixels
+			final float[] fpx = (float[]) filters.getPixels(bin+1);
+			double sum = 0;
+			for (int ix = 0; ix<npadx; ix++) {
+				for (int iy = 0; iy<npady; iy++) {
+					final float[] spectrum_px = spectra_px[ix+npadx*iy];
+					for (int i = 0; i < spectrum_px.length; i++) {
+						sum += spectrum_px[i] * fpx[i]; // will sum out with every block
+					}
 				}
-
-				// For orientation map
-				float[] weights = null, max_weights = null, best_angle = null;
-				FHT tmp;
-				FloatProcessor small_tmp;
-				float[] tmp_px, small_tmp_px;
-				
-
-				if (build_orientation_map) {
-					weights 	= new float[small_side * small_side];
-					max_weights = new float[small_side * small_side];
-					best_angle 	= new float[small_side * small_side];
+			}
+			dir[bin] = sum;
+		});
+		
+		if (!build_orientation_map) {
+			return dir;
+		}
+		
+		// For orientation map: the filtered image of each bin, in parallel over the blocks
+		final FloatProcessor[] hue_arrays = new FloatProcessor[nblocks];
+		final FloatProcessor[] saturation_arrays = new FloatProcessor[nblocks];
+		final float[] block_max_norm = new float[nblocks];
+		IntStream.range(0, nblocks).parallel().forEach(block -> {
+			final float[] weights = new float[small_side * small_side];
+			final float[] max_weights = new float[small_side * small_side];
+			final float[] best_angle = new float[small_side * small_side];
+			float max_norm = 0.0f;
+			for (int bin=0; bin<nbins; bin++) {
+				final float[] fpx = (float[]) filters.getPixels(bin+1);
+				FHT tmp = ffts[block].getCopy();
+				tmp.setShowProgress(false);
+				float[] tmp_px = (float[]) tmp.getPixels();
+				for (int i = 0; i < tmp_px.length; i++) {
+					tmp_px[i] *= fpx[i];							
 				}
-
-				// Loop over all bins
-				for (int bin=0; bin<nbins; bin++) {
-					
-					// Get filter pixels
-					fpx = (float[]) filters.getPixels(bin+1);
-					
-					// Loop over all pixels
-					if (build_orientation_map) {
-						
-						tmp = fft.getCopy();
-						tmp.setShowProgress(false);
-						tmp_px = (float[]) tmp.getPixels();
-						for (int i = 0; i < spectrum_px.length; i++) {
-							// Computes angular density
-							dir[bin] += spectrum_px[i] * fpx[i]; // will sum out with every block
-							// Build orientation map if needed
-							tmp_px[i] *= fpx[i];							
-						}
-						tmp.inverseTransform();
-						tmp.setRoi(original_square);
-						small_tmp = (FloatProcessor) tmp.crop();
-						
-						// Build angular statistics arrays -> 2nd loop
-						small_tmp_px = (float[]) small_tmp.getPixels();
-						for (int j = 0; j < small_tmp_px.length; j++) {
-							weights[j] = small_tmp_px[j] * small_tmp_px[j];
-							if (weights[j] > max_weights[j]) {
-								max_weights[j] = weights[j];
-								best_angle[j] = (float) bins[bin]; // rad, [-pi/2 - pi/2[
-							}
-							// Overall maximum calculation
-							if (weights[j] > max_norm) {
-								max_norm = weights[j]; 
-							}
-						}
-						
-					} else {
-						
-						for (int i = 0; i < spectrum_px.length; i++) {
-							// Computes angular density, and that's all
-							dir[bin] += spectrum_px[i] * fpx[i]; // will sum out with every block
-						}							
+				tmp.inverseTransform();
+				tmp.setRoi(original_square);
+				FloatProcessor small_tmp = (FloatProcessor) tmp.crop();
+				
+				// Build angular statistics arrays -> 2nd loop
+				float[] small_tmp_px = (float[]) small_tmp.getPixels();
+				for (int j = 0; j < small_tmp_px.length; j++) {
+					weights[j] = small_tmp_px[j] * small_tmp_px[j];
+					if (weights[j] > max_weights[j]) {
+						max_weights[j] = weights[j];
+						best_angle[j] = (float) bins[bin]; // rad, [-pi/2 - pi/2[
+					}
+					// Overall maximum calculation
+					if (weights[j] > max_norm) {
+						max_norm = weights[j]; 
 					}
-
-				} // end loop over all bins
-
-				// Store results
-				if (build_orientation_map) {
-					hue_arrays[ix+npadx*iy] = new FloatProcessor(ip.getWidth(), ip.getHeight());
-					hue_arrays[ix+npadx*iy].insert(new FloatProcessor(small_side, small_side, best_angle, null), ix*step, iy*step);
-					saturation_arrays[ix+npadx*iy] = new FloatProcessor(ip.getWidth(), ip.getHeight());
-					saturation_arrays[ix+npadx*iy].insert(new FloatProcessor(small_side, small_side, max_weights, null), ix*step, iy*step);
 				}
 			}
+			block_max_norm[block] = max_norm;
+			
+			// Store results
+			final int ix = block % npadx;
+			final int iy = block / npadx;
+			hue_arrays[block] = new FloatProcessor(ip.getWidth(), ip.getHeight());
+			hue_arrays[block].insert(new FloatProcessor(small_side, small_side, best_angle, null), ix*step, iy*step);
+			saturation_arrays[block] = new FloatProcessor(ip.getWidth(), ip.getHeight());
+			saturation_arrays[block].insert(new FloatProcessor(small_side, small_side, max_weights, null), ix*step, iy*step);
+		});
+		
+		// Overall maximum of the weights
+		float max_norm = 0.0f;
+		for (int block = 0; block < nblocks; block++) {
+			max_norm = Math.max(max_norm, block_max_norm[block]);
 		}
 		
 		// Reconstruct final orientation map
-		if (build_orientation_map) {
-			FloatProcessor big_hue = new FloatProcessor(ip.getWidth(), ip.getHeight());
-			FloatProcessor big_saturation = new FloatProcessor(ip.getWidth(), ip.getHeight());
-			float[] big_hue_px = (float[]) big_hue.getPixels();
-			float[] big_saturation_px = (float[]) big_saturation.getPixels();
-			float[] saturation_px = null, hue_px = null;
-			for (int ix = 0; ix<npadx; ix++) {
-				for (int iy = 0; iy<npady; iy++) {
-					hue_px = (float[]) hue_arrays[ix+npadx*iy].getPixels();
-					saturation_px = (float[]) saturation_arrays[ix+npadx*iy].getPixels();
-					for (int i = 0; i < big_hue_px.length; i++) {
-						if ((255*saturation_px[i]/max_norm) >= big_saturation_px[i]) {
-							big_saturation_px[i] = (255*saturation_px[i]/max_norm);
+		FloatProcessor big_hue = new FloatProcessor(ip.getWidth(), ip.getHeight());
+		FloatProcessor big_saturation = new FloatProcessor(ip.getWidth(), ip.getHeight());
+		float[] big_hue_px = (float[]) big_hue.getPixels();
+		float[] big_saturation_px = (float[]) big_saturation.getPixels();
+		float[] saturation_px = null, hue_px = null;
+		for (int ix = 0; ix<npadx; ix++) {
+			for (int iy = 0; iy<npady; iy++) {
+				hue_px = (float[]) hue_arrays[ix+npadx*iy].getPixels();
+				saturation_px = (float[]) saturation_arrays[ix+npadx*iy].getPixels();
+				for (int i = 0; i < big_hue_px.length; i++) {
+					if ((255*saturation_px[i]/max_norm) >= big_saturation_px[i]) {
+						big_saturation_px[i] = (255*saturation_px[i]/max_norm);
 //							big_hue_px[i] = (float) ( 255 *  ( ( 1 + hue_px[i]/Math.PI ) % 1 ) ); 
-							big_hue_px[i] = (float) ( 255 *  ( ( 0.8 + hue_px[i]/Math.PI )  ) ); 
-						}
+						big_hue_px[i] = (float) ( 255 *  ( ( 0.8 + hue_px[i]/Math.PI )  ) ); 
 					}
 				}
 			}
-
-			ByteProcessor big_brightness = (ByteProcessor) ip.convertToByte(true);
-			ColorProcessor cp = new ColorProcessor(ip.getWidth(), ip.getHeight());
-			cp.setHSB(
-						(byte[]) big_hue.convertToByte(false).getPixels(), 
-						(byte[]) big_saturation.convertToByte(false).getPixels(), 
-						(byte[]) big_brightness.getPixels()
-					); 
-			orientation_map.addSlice(makeNames()[slice_index], cp);
 		}
 
-		if (debug) {
-			new ImagePlus("Log10 power FFT of "+makeNames()[slice_index], spectra).show();
-		}
+		ByteProcessor big_brightness = (ByteProcessor) ip.convertToByte(true);
+		ColorProcessor cp = new ColorProcessor(ip.getWidth(), ip.getHeight());
+		cp.setHSB(
+					(byte[]) big_hue.convertToByte(false).getPixels(), 
+					(byte[]) big_saturation.convertToByte(false).getPixels(), 
+					(byte[]) big_brightness.getPixels()
+				); 
+		orientation_map.addSlice(makeNames()[slice_index], cp);
 		
 		return dir;		
 	}
@@ -1648,4 +1797,35 @@ public class Directionality implements PlugIn {
 
 	}
 	
+
+	/**
+	 * The fields of the Fourier analysis that only depend on the sizes and the number of bins.
+	 */
+	private static final class FourierFields {
+		final FloatProcessor window, r, theta;
+		final ImageStack filters;
+		
+		FourierFields(FloatProcessor window, FloatProcessor r, FloatProcessor theta, ImageStack filters) {
+			this.window = window;
+			this.r = r;
+			this.theta = theta;
+			this.filters = filters;
+		}
+	}
+
+	/**
+	 * The result of the analysis of a slice: the bin centers in degrees, the histogram, normalized
+	 * so that it sums to 100, and the parameters of the gaussian fit, null if it was not done.
+	 */
+	public static final class SliceResult {
+		public final double[] bins;
+		public final double[] histogram;
+		public final double[] fit;
+		
+		SliceResult(double[] bins, double[] histogram, double[] fit) {
+			this.bins = bins;
+			this.histogram = histogram;
+			this.fit = fit;
+		}
+	}
 }
@@ -1,11 +1,9 @@
 package com.mycompany.imagej;
 
 import com.google.gson.JsonObject;
-import ij.IJ;
 import ij.ImagePlus;
 import ij.gui.OvalRoi;
 import ij.gui.Roi;
-import ij.measure.ResultsTable;
 import ij.process.ImageProcessor;
 
 public class DirectionalityAnalysis {
@@ -14,11 +12,14 @@ public class DirectionalityAnalysis {
     public ImageProcessor ip;
     public JsonObject jobj = new JsonObject();
 
-    DirectionalityAnalysis(ImagePlus im0, Geom geo){
-        im = im0.duplicate();
+    /**
+     * @param ctx analysis context of the image
+     */
+    DirectionalityAnalysis(Context ctx){
+        im = ctx.mask();
+        Geom geo = ctx.geom();
 
         ip = im.getProcessor();
-        ip.autoThreshold();
         ip.setRoi(new OvalRoi(geo.xMid - 0.45 * geo.width, geo.yMid, 0.9 * geo.width, 0.9 * geo.height));
         im.setProcessor(ip);
         Directionality dnlty = new Directionality();
@@ -29,28 +30,24 @@ public class DirectionalityAnalysis {
 
         ImagePlus img = new ImagePlus();
 
-        img.setProcessor(ip.duplicate().rotateLeft());
+        img.setProcessor(ip.rotateLeft());
         dnlty.setImagePlus(img);
 
         dnlty.setMethod(Directionality.AnalysisMethod.LOCAL_GRADIENT_ORIENTATION);
         dnlty.setBinNumber(nbins);
         dnlty.setBinStart(binStart);
-        dnlty.setBuildOrientationMapFlag(true);
+        dnlty.setBuildOrientationMapFlag(false);
 
         // Do calculation
         dnlty.computeHistograms();
-        ResultsTable rs = dnlty.displayResultsTable();
+        Directionality.SliceResult res = dnlty.getResult(0);
         double angle = 0;
         double tot = 0;
-        for(int k = 0; k < rs.getCounter(); k++){
-            for(int l = 0; l < (rs.getValueAsDouble(1, k)); l++){
-                double direct = rs.getValueAsDouble(0, k);
-                double prop = rs.getValueAsDouble(1, k);
-                angle += Math.abs(direct)*prop;
-                tot += prop;
-            }
+        // Mean absolute direction, weighted by the proportion of each bin
+        for(int k = 0; k < res.bins.length; k++){
+            angle += Math.abs(res.bins[k]) * res.histogram[k];
+            tot += res.histogram[k];
         }
-        rs.reset();
 
         jobj.addProperty("anglePropotion", angle / tot);
     }
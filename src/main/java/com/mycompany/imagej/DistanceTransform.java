@@ -0,0 +1,124 @@
+package com.mycompany.imagej;
+
+import ij.process.FloatProcessor;
+import ij.process.ImageProcessor;
+
+import java.util.stream.IntStream;
+
+/**
+ * Exact Euclidean distance transform of a binary image
+ * Separable, as described by Felzenszwalb and Huttenlocher (Distance Transforms of Sampled Functions,
+ * 2012): the distance to the closest background pixel of the same column first, then the lower
+ * envelope of the parabolas of each row. Both passes are linear in the number of pixels, and run
+ * in parallel over bands of columns, then of rows. The distances are not rounded nor capped, unlike
+ * the 8-bit output of ij.plugin.filter.EDM. As for it, the outside of the image is not background.
+ */
+public class DistanceTransform {
+
+    // Number of rows or columns handled by a task
+    private static final int BAND = 64;
+    // Squared distance of a pixel without any background in its column
+    private static final double FAR = 1e20;
+
+    /**
+     * @param ip binary image
+     * @param foreground value of the foreground pixels, every other value is background
+     * @return distance of each foreground pixel to the closest background pixel, 0 on the background,
+     * infinite if the image has no background
+     */
+    public static FloatProcessor edm(ImageProcessor ip, int foreground) {
+        int width = ip.getWidth();
+        int height = ip.getHeight();
+        byte[] pixels = Line.pixels(ip);
+        // Distance to the closest background pixel of the column, -1 if none
+        int[] column = new int[width * height];
+
+        // Down then up each column, a band of columns at a time, reading the rows in order
+        IntStream.range(0, (width + BAND - 1) / BAND).parallel().forEach(b -> {
+            int x0 = b * BAND;
+            int x1 = Math.min(width, x0 + BAND);
+            for (int y = 0; y < height; y++) {
+                int offset = y * width;
+                for (int x = x0; x < x1; x++) {
+                    int i = offset + x;
+                    if ((pixels[i] & 0xff) != foreground) column[i] = 0;
+                    else column[i] = y == 0 || column[i - width] < 0 ? -1 : column[i - width] + 1;
+                }
+            }
+            for (int y = height - 2; y >= 0; y--) {
+                int offset = y * width;
+                for (int x = x0; x < x1; x++) {
+                    int i = offset + x;
+                    int below = column[i + width];
+                    if (below >= 0 && (column[i] < 0 || below + 1 < column[i])) column[i] = below + 1;
+                }
+            }
+        });
+
+        // Lower envelope of the parabolas along each row, a band of rows at a time
+        float[] distance = new float[width * height];
+        IntStream.range(0, (height + BAND - 1) / BAND).parallel().forEach(b -> {
+            double[] f = new double[width];
+            double[] z = new double[width + 1];
+            int[] v = new int[width];
+            for (int y = b * BAND; y < Math.min(height, (b + 1) * BAND); y++) {
+                int offset = y * width;
+                for (int x = 0; x < width; x++) {
+                    int g = column[offset + x];
+                    f[x] = g < 0 ? FAR : (double) g * g;
+                }
+                row(f, z, v, width, distance, offset);
+            }
+        });
+        return new FloatProcessor(width, height, distance);
+    }
+
+    /**
+     * @param ip a distance map, float or 8-bit
+     * @return its distances, as floats
+     */
+    static float[] pixels(ImageProcessor ip) {
+        if (ip instanceof FloatProcessor) return (float[]) ip.getPixels();
+        return (float[]) ip.convertToFloat().getPixels();
+    }
+
+    /**
+     * One-dimensional distance transform of a sampled function
+     * @param f squared distances along the columns
+     * @param z scratch, boundaries of the parabolas of the envelope
+     * @param v scratch, vertices of the parabolas of the envelope
+     * @param n length of the row
+     * @param out where the distances are written
+     * @param offset index of the row in out
+     */
+    static void row(double[] f, double[] z, int[] v, int n, float[] out, int offset) {
+        int k = 0;
+        v[0] = 0;
+        z[0] = Double.NEGATIVE_INFINITY;
+        z[1] = Double.POSITIVE_INFINITY;
+        for (int q = 1; q < n; q++) {
+            double s = intersection(f, q, v[k]);
+            while (s <= z[k]) {
+                k--;
+                s = intersection(f, q, v[k]);
+            }
+            k++;
+            v[k] = q;
+            z[k] = s;
+            z[k + 1] = Double.POSITIVE_INFINITY;
+        }
+        k = 0;
+        for (int q = 0; q < n; q++) {
+            while (z[k + 1] < q) k++;
+            double d = (double) (q - v[k]) * (q - v[k]) + f[v[k]];
+            out[offset + q] = d >= FAR ? Float.POSITIVE_INFINITY : (float) Math.sqrt(d);
+        }
+    }
+
+    /**
+     * @return abscissa where the parabolas of vertices q and p meet
+     */
+    private static double intersection(double[] f, int q, int p) {
+        return ((f[q] + (double) q * q) - (f[p] + (double) p * p)) / (2.0 * q - 2.0 * p);
+    }
+}
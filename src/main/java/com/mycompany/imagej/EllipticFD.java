@@ -1,5 +1,9 @@
 package com.mycompany.imagej;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
 /**
   * EllipticFD
   * This class implements the Elliptic Fourier Descriptor EFD that is described
@@ -42,6 +46,8 @@ public class EllipticFD {
   public double[] ax, ay, bx, by;
   /* The normalized Elliptic Fourier Descriptors */
   public double[] efd;
+  /* The cosines and sines of 2.pi.j/m */
+  private double[] cos, sin;
   
   
   /**
@@ -52,11 +58,7 @@ public class EllipticFD {
     * the number of descriptors is set to half the number of contour points
     */
   public EllipticFD(double[] x, double[] y, int n){
-      this.x = x;
-      this.y = y;
-      this.nFD = n;
-      this.m = x.length;
-      computeEllipticFD(); 
+      this(x, y, n, null);
   }
 
   /**
@@ -66,11 +68,61 @@ public class EllipticFD {
     * @param y the y coordinates of the contour
     */  
   public EllipticFD(double[] x, double[] y){ 
+      this(x, y, x.length/2, null);
+  }
+
+  /**
+    * Constructor sharing the cosines and sines of the contours with the same number of points
+    * @param x the x coordinates of the contour
+    * @param y the y coordinates of the contour
+    * @param n the number of descriptors to compute
+    * @param table the table of the number of points of the contour, as given by table(m), 
+    * computed if null
+    */
+  private EllipticFD(double[] x, double[] y, int n, double[][] table){
       this.x = x;
       this.y = y;
-      this.nFD = x.length/2;
+      this.nFD = n;
       this.m = x.length;
-      computeEllipticFD();       
+      this.cos = table != null ? table[0] : table(m)[0];
+      this.sin = table != null ? table[1] : table(m)[1];
+      computeEllipticFD(); 
+  }
+
+  /**
+    * Computes the descriptors of many contours at once
+    * The contours are computed in parallel, and the contours with the same number 
+    * of points share the same table of cosines and sines.
+    * No caller yet: ConvexHull describes a single contour, with the constructor.
+    * @param xs the x coordinates of each contour
+    * @param ys the y coordinates of each contour
+    * @param n the number of descriptors to compute for each contour
+    * @return the descriptors of each contour, in the same order
+    */
+  public static EllipticFD[] compute(double[][] xs, double[][] ys, int n){
+    Map<Integer, double[][]> tables = new HashMap<>();
+    for (double[] x : xs) tables.computeIfAbsent(x.length, EllipticFD::table);
+    EllipticFD[] fds = new EllipticFD[xs.length];
+    IntStream.range(0, xs.length).parallel().forEach(c -> 
+        fds[c] = new EllipticFD(xs[c], ys[c], n, tables.get(xs[c].length)));
+    return fds;
+  }
+
+  /**
+    * The angles of the descriptors are all multiples of 2.pi/m: the cosine and the sine
+    * of the angle 2.pi.k.i/m are those of 2.pi.((k.i) mod m)/m, so that a contour of m 
+    * points needs m cosines and sines instead of one for each descriptor and point.
+    * @param m the number of points of the contour
+    * @return the cosines and sines of 2.pi.j/m, for j from 0 to m-1
+    */
+  static double[][] table(int m){
+    double[][] table = new double[2][m];
+    double t = 2.0*Math.PI/m;
+    for (int j = 0; j < m; j++){
+      table[0][j] = Math.cos(t*j);
+      table[1][j] = Math.sin(t*j);
+    }
+    return table;
   }
   
   
@@ -86,18 +138,18 @@ public class EllipticFD {
     by = new double[nFD];
      
     //preconfigure some values
-    double t = 2.0*Math.PI/m;
-    double p;
     double twoOverM = 2.0/m;
     //step through each FD
     for (int k = 0; k < nFD; k++){
-      //and for each point
-      for (int i = 0; i < m; i++){
-        p = k*t*i;
-        ax[k] +=  x[i]*Math.cos(p);
-        bx[k] +=  x[i]*Math.sin(p);
-        ay[k] +=  y[i]*Math.cos(p);
-        by[k] +=  y[i]*Math.sin(p);
+      int step = m > 0 ? k % m : 0;
+      //and for each point, j being (k*i) mod m
+      for (int i = 0, j = 0; i < m; i++){
+        ax[k] +=  x[i]*cos[j];
+        bx[k] +=  x[i]*sin[j];
+        ay[k] +=  y[i]*cos[j];
+        by[k] +=  y[i]*sin[j];
+        j += step;
+        if (j >= m) j -= m;
       }//i-loop through the number of points
       
       
@@ -124,23 +176,24 @@ public class EllipticFD {
   }//computeEllipticFD
   
   /**
-    * Returns the polygon computed using the FD coefficients
+    * Returns the polygon computed using the FD coefficients, truncated to int
     * @return a nx2 element array of x,y pairs that is 
     * the same length as the input polygon
     * 
     */
   public double[][] createPolygon(){
-    double p;
     double[][] xy = new double[m][2];
-    double t = 2.0*Math.PI/m;
     for (int i = 0; i < m; i++){
      xy[i][0] = ax[0]/2.0;
      xy[i][1] = ay[0]/2.0;
      
-     for (int k = 1; k < nFD; k++){
-      p = t * k * i;
-      xy[i][0] += ax[k]*Math.cos(p) + bx[k] * Math.sin(p);
-      xy[i][1] += ay[k]*Math.cos(p) + by[k] * Math.sin(p);
+     //j being (k*i) mod m
+     int step = i % m;
+     for (int k = 1, j = step; k < nFD; k++){
+      xy[i][0] += ax[k]*cos[j] + bx[k] * sin[j];
+      xy[i][1] += ay[k]*cos[j] + by[k] * sin[j];
+      j += step;
+      if (j >= m) j -= m;
      } //k-loop through the FDs
     }//i-loop through the points
     return xy;
@@ -153,22 +206,12 @@ public class EllipticFD {
     * 
     */
   public int[][] createPolygonInt(){
-    double p;
-    double[][] xy = new double[m][2];
+    double[][] xy = createPolygon();
     int[][] ixy = new int[m][2];
-    double t = 2.0*Math.PI/m;
+    if (nFD < 2) return ixy;
     for (int i = 0; i < m; i++){
-     xy[i][0] = ax[0]/2.0;
-     xy[i][1] = ay[0]/2.0;
-     
-     for (int k = 1; k < nFD; k++){
-      p = t * k * i;
-      xy[i][0] += ax[k]*Math.cos(p) + bx[k] * Math.sin(p);
-      xy[i][1] += ay[k]*Math.cos(p) + by[k] * Math.sin(p);
       ixy[i][0] = (int) xy[i][0];
       ixy[i][1] = (int) xy[i][1];
-      
-     } //k-loop through the FDs
     }//i-loop through the points
     return ixy;
   }//createPolygon
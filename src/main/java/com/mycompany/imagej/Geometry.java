@@ -1,12 +1,10 @@
 package com.mycompany.imagej;
 
 import ij.ImagePlus;
-import ij.IJ;
 import ij.gui.Overlay;
 import ij.gui.Roi;
-import ij.plugin.filter.Analyzer;
-import ij.measure.ResultsTable;
-import ij.measure.Measurements;
+import ij.process.ImageProcessor;
+import com.google.gson.JsonObject;
 
 import java.awt.*;
 
@@ -15,39 +13,60 @@ public class Geometry {
     public ImagePlus skel;
     public double epsilon= 1e-9f;
     public Geom geo = new Geom();
+    public JsonObject jobj = new JsonObject();
 
     /**
-     * @param im0 input image
-     * @param skel0 its pre-computed skel
+     * @param ctx analysis context of the image
      */
-    public Geometry(ImagePlus im0, ImagePlus skel0) {
-        im = im0.duplicate();
-        skel = skel0.duplicate();
+    public Geometry(Context ctx) {
+        im = ctx.mask();
+        skel = ctx.skeleton();
 
-        im.getProcessor().autoThreshold();
-        IJ.run(im, "Create Selection", "");
-        ResultsTable rt = new ResultsTable();
-        Analyzer.setResultsTable(rt);
-        Analyzer an;
+        // Length: foreground of the skeleton, measured as the area fraction of the whole image
+        ImageProcessor sp = skel.getProcessor();
+        byte[] sPixels = (byte[]) sp.getPixels();
+        int nSkel = 0;
+        for (byte p : sPixels) if (p != 0) nSkel++;
+        geo.length = PixelProfile.foreground(nSkel, sPixels.length);
 
-        an = new Analyzer(skel, Measurements.AREA | Measurements.AREA_FRACTION | Measurements.RECT, rt);
-        rt.reset(); an.measure();
-        geo.length = ((rt.getValue("%Area", 0) / 100) * rt.getValue("Area", 0));
-
-        an = new Analyzer(im, Measurements.AREA | Measurements.CENTER_OF_MASS | Measurements.RECT, rt);
-        rt.reset(); an.measure();
-        geo.area = rt.getValue("Area", 0);
-        geo.width = Math.max(rt.getValue("Width", 0), epsilon);
-        geo.height = Math.max(rt.getValue("Height", 0), epsilon);
+        // Area and bounding box of the foreground, as selected by Util.createSelection
+        Rectangle r = ctx.bounds();
+        geo.area = ctx.integral().total();
+        geo.width = Math.max(r.width, epsilon);
+        geo.height = Math.max(r.height, epsilon);
         geo.widthHeightRatio = geo.width / geo.height;
-        geo.bX = rt.getValue("BX", 0);
-        geo.bY = rt.getValue("BY", 0);
-        geo.comX = (rt.getValue("XM", 0) - geo.bX) / geo.width;
-        geo.comY = (rt.getValue("YM", 0) - geo.bY) / geo.height;
-        geo.yMid = rt.getValue("BY", 0);
-        geo.xMid = rt.getValue("XM", 0);
-        im.close();
-        skel.close();
+        geo.bX = r.x;
+        geo.bY = r.y;
+
+        // Center of mass of the foreground, with the arithmetic of ImageJ (ByteStatistics)
+        ImageProcessor ip = im.getProcessor();
+        byte[] pixels = (byte[]) ip.getPixels();
+        int fg = ip.isInvertedLut() ? 255 : 0;
+        double sum = 0, xsum = 0, ysum = 0;
+        for (int y = r.y; y < r.y + r.height; y++) {
+            for (int x = r.x; x < r.x + r.width; x++) {
+                int value = pixels[y * ip.getWidth() + x] & 0xff;
+                if (value != fg) continue;
+                double v = value + Double.MIN_VALUE;
+                sum += v;
+                xsum += x * v;
+                ysum += y * v;
+            }
+        }
+        double xm = xsum / sum + 0.5;
+        double ym = ysum / sum + 0.5;
+        geo.comX = (xm - geo.bX) / geo.width;
+        geo.comY = (ym - geo.bY) / geo.height;
+        geo.yMid = geo.bY;
+        geo.xMid = xm;
+
+        jobj.addProperty("length", geo.length);
+        jobj.addProperty("area", geo.area);
+        jobj.addProperty("width", geo.width);
+        jobj.addProperty("height", geo.height);
+        jobj.addProperty("widthHeightRatio", geo.widthHeightRatio);
+        jobj.addProperty("comX", geo.comX);
+        jobj.addProperty("comY", geo.comY);
     }
 
     public ImagePlus overlay(ImagePlus im){
@@ -473,7 +473,8 @@ public class Gui extends JFrame implements ItemListener, ActionListener, ChangeL
 							saveImages.isSelected(),
 							saveTips.isSelected(),
 							saveTPS.isSelected(),
-							saveEfd.isSelected(), true, rootImageFolder.getText()+"/param/"
+							saveEfd.isSelected(), true, rootImageFolder.getText()+"/param/",
+							Runtime.getRuntime().availableProcessors()
 							);	
 				}
 			});
@@ -0,0 +1,140 @@
+package com.mycompany.imagej;
+
+import ij.gui.Roi;
+import ij.process.ImageProcessor;
+
+import java.awt.Rectangle;
+
+/**
+ * Summed-area table of the foreground of a binary mask
+ * Built once per image, it counts the foreground of any rectangle in O(1), and of any other
+ * selection in O(rows) from the runs of its mask. The foreground is chosen as in Util.createSelection.
+ */
+public class IntegralImage {
+
+    public final int width;
+    public final int height;
+    // Foreground of the rectangle (0, 0, x, y) at (y * (width + 1) + x)
+    private final int[] sat;
+
+    /**
+     * @param ip binary mask
+     */
+    IntegralImage(ImageProcessor ip) {
+        width = ip.getWidth();
+        height = ip.getHeight();
+        sat = new int[(width + 1) * (height + 1)];
+        int fg = ip.isInvertedLut() ? 255 : 0;
+        byte[] pixels = (byte[]) ip.getPixels();
+        for (int y = 0; y < height; y++) {
+            int row = 0;
+            int above = y * (width + 1);
+            int here = above + width + 1;
+            for (int x = 0; x < width; x++) {
+                if ((pixels[y * width + x] & 0xff) == fg) row++;
+                sat[here + x + 1] = sat[above + x + 1] + row;
+            }
+        }
+    }
+
+    /**
+     * @return foreground of the whole mask
+     */
+    public int total() {
+        return sat[sat.length - 1];
+    }
+
+    /**
+     * @param x left of the rectangle
+     * @param y top of the rectangle
+     * @param w width of the rectangle
+     * @param h height of the rectangle
+     * @return foreground of the rectangle, clipped to the mask
+     */
+    public int count(int x, int y, int w, int h) {
+        int x0 = Math.max(x, 0);
+        int y0 = Math.max(y, 0);
+        int x1 = Math.min(x + w, width);
+        int y1 = Math.min(y + h, height);
+        if (x0 >= x1 || y0 >= y1) return 0;
+        int stride = width + 1;
+        return sat[y1 * stride + x1] - sat[y0 * stride + x1] - sat[y1 * stride + x0] + sat[y0 * stride + x0];
+    }
+
+    /**
+     * @param r the rectangle
+     * @return foreground of the rectangle, clipped to the mask
+     */
+    public int count(Rectangle r) {
+        return count(r.x, r.y, r.width, r.height);
+    }
+
+    /**
+     * Count an axis-aligned ellipse, one row at a time: the pixels whose center is inside it
+     * @param cx x of the center
+     * @param cy y of the center
+     * @param rx horizontal radius
+     * @param ry vertical radius
+     * @return {foreground, pixels} of the ellipse, clipped to the mask
+     */
+    public int[] count(double cx, double cy, double rx, double ry) {
+        int fg = 0;
+        int size = 0;
+        if (rx <= 0 || ry <= 0) return new int[]{fg, size};
+        int y0 = Math.max(0, (int) Math.floor(cy - ry));
+        int y1 = Math.min(height - 1, (int) Math.ceil(cy + ry));
+        for (int y = y0; y <= y1; y++) {
+            double dy = (y + 0.5 - cy) / ry;
+            if (dy * dy >= 1) continue;
+            double dx = rx * Math.sqrt(1 - dy * dy);
+            // Columns whose center x + 0.5 is within (cx - dx, cx + dx)
+            int x0 = Math.max(0, (int) Math.floor(cx - dx - 0.5) + 1);
+            int x1 = Math.min(width, (int) Math.ceil(cx + dx - 0.5));
+            if (x0 < x1) {
+                fg += count(x0, y, x1 - x0, 1);
+                size += x1 - x0;
+            }
+        }
+        return new int[]{fg, size};
+    }
+
+    /**
+     * Count a selection as ImageJ measures it: the pixels of its mask within its bounds, clipped to the mask
+     * @param roi the selection
+     * @return {foreground, pixels} of the selection
+     */
+    public int[] count(Roi roi) {
+        Rectangle b = roi.getBounds();
+        ImageProcessor m = roi.getMask();
+        if (m == null) {
+            int w = Math.max(0, Math.min(b.x + b.width, width) - Math.max(b.x, 0));
+            int h = Math.max(0, Math.min(b.y + b.height, height) - Math.max(b.y, 0));
+            return new int[]{count(b), w * h};
+        }
+
+        // One run of the selection mask at a time, each counted from the table
+        byte[] mp = (byte[]) m.getPixels();
+        int fg = 0;
+        int size = 0;
+        for (int ry = 0; ry < b.height; ry++) {
+            int y = b.y + ry;
+            if (y < 0 || y >= height) continue;
+            int rx = 0;
+            while (rx < b.width) {
+                if (mp[ry * b.width + rx] == 0) {
+                    rx++;
+                    continue;
+                }
+                int start = rx;
+                while (rx < b.width && mp[ry * b.width + rx] != 0) rx++;
+                int x0 = Math.max(b.x + start, 0);
+                int x1 = Math.min(b.x + rx, width);
+                if (x0 < x1) {
+                    fg += count(x0, y, x1 - x0, 1);
+                    size += x1 - x0;
+                }
+            }
+        }
+        return new int[]{fg, size};
+    }
+}
@@ -0,0 +1,75 @@
+package com.mycompany.imagej;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Append-only record of the images already analyzed
+ * Each line holds the path, size and modification time of an image whose features are in the
+ * output, so that a rerun on the same images and output only analyzes the new or changed ones.
+ */
+public class Journal {
+
+    private Set<String> done = new HashSet<>();
+    private RowWriter pw;
+
+    /**
+     * @param file   journal file
+     * @param resume true to keep the images already recorded, false to start a new journal
+     */
+    Journal(String file, boolean resume) {
+        if (resume) {
+            RowWriter.trimPartialRow(new File(file));
+            try (BufferedReader br = new BufferedReader(new FileReader(file))) {
+                String line;
+                while ((line = br.readLine()) != null) done.add(line);
+            } catch (IOException e) {
+                // No previous run
+            }
+        }
+        // Only written when the output is flushed, see RowWriter.next
+        pw = Util.initializeCSV(file, resume);
+        if (pw != null) pw.flush = RowWriter.Flush.CLOSE;
+    }
+
+    /**
+     * @param file an image
+     * @return the entry of the image: path, size and modification time
+     */
+    static String key(File file) {
+        return file.getAbsolutePath() + "\t" + file.length() + "\t" + file.lastModified();
+    }
+
+    /**
+     * @param file an image
+     * @return true if the image, unchanged, is already in the output
+     */
+    public boolean isDone(File file) {
+        return done.contains(key(file));
+    }
+
+    /**
+     * Record an image whose features were written to the output
+     * @param file the image
+     */
+    public synchronized void record(File file) {
+        String key = key(file);
+        if (pw != null) pw.println(key);
+        done.add(key);
+    }
+
+    /**
+     * @return the writer of the journal
+     */
+    public RowWriter writer() {
+        return pw;
+    }
+
+    public synchronized void close() {
+        if (pw != null) pw.close();
+    }
+}
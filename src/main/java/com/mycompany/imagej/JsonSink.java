@@ -0,0 +1,45 @@
+package com.mycompany.imagej;
+
+import com.google.gson.JsonObject;
+
+import java.io.File;
+
+
+/**
+ * Write the features of each image as one line of JSON (newline-delimited JSON)
+ */
+public class JsonSink implements ResultSink {
+
+    private RowWriter pw;
+
+    JsonSink(RowWriter pw) {
+        this.pw = pw;
+    }
+
+    /**
+     * @param file   output file
+     * @param append true to add to the records already in the file
+     * @return the sink, null if the file could not be created
+     */
+    public static JsonSink open(String file, boolean append) {
+        if (append) RowWriter.trimPartialRow(new File(file));
+        RowWriter pw = Util.initializeCSV(file, append);
+        return pw == null ? null : new JsonSink(pw);
+    }
+
+    @Override
+    public synchronized void write(JsonObject features, Runnable written) {
+        pw.println(features.toString(), written);
+        pw.endImage();
+    }
+
+    @Override
+    public RowWriter writer() {
+        return pw;
+    }
+
+    @Override
+    public synchronized void close() {
+        pw.close();
+    }
+}
@@ -2,8 +2,29 @@ package com.mycompany.imagej;
 
 import ij.process.ImageProcessor;
 
+/**
+ * Scans of the rows and neighbourhoods of binary images
+ * The kernels work on the pixel array (row-major, as ImageJ stores it) of 8-bit images,
+ * a pixel is foreground when above 125.
+ */
 public class Line {
 
+    /**
+     * Number of foreground pixels in each 8-neighbourhood, indexed by neighbourCode
+     */
+    static final int[] NEIGHBOURS = new int[256];
+    static {
+        for (int code = 0; code < 256; code++) NEIGHBOURS[code] = Integer.bitCount(code);
+    }
+
+    /**
+     * @param bp imageprocessor
+     * @return its pixels, as 8-bit values
+     */
+    static byte[] pixels(ImageProcessor bp) {
+        return (byte[]) bp.convertToByte(false).getPixels();
+    }
+
     /**
      * Compute the number of black pixels along a line
      * @param bp imageprocessor
@@ -11,9 +32,19 @@ public class Line {
      * @return the number of pixels that are about 125
      */
     public static int count(ImageProcessor bp, int h){
+        return count(pixels(bp), bp.getWidth(), h);
+    }
+
+    /**
+     * @param pixels the pixels of the image
+     * @param width width of the image
+     * @param h a particular y-coordinate for horizontal line
+     * @return the number of pixels > 125 along the line
+     */
+    static int count(byte[] pixels, int width, int h){
         int n = 0;
-        for(int i = 0; i < bp.getWidth(); i++){
-            if(bp.getPixel(i, h) > 125) n++;
+        for(int i = h * width, end = i + width; i < end; i++){
+            if((pixels[i] & 0xff) > 125) n++;
         }
         return n;
     }
@@ -25,17 +56,27 @@ public class Line {
      * @return the extent of pixels > 125 in x-direction
      */
     public static int extent(ImageProcessor bp, int h){
-        int n = 0;
-        int left = -1;
-        int right = -1;
-        for(int i = 0; i < bp.getWidth(); i++){
-            if ((bp.getPixel(i, h) > 125) && (left == -1)) {
-                left = i;
-            }
-            if ((bp.getPixel(i,h) < 125) && (left != -1)) {
-                right = i;
-            }
-        }
+        return extent(pixels(bp), bp.getWidth(), h);
+    }
+
+    /**
+     * The extent runs from the first pixel > 125 to the last pixel < 125 after it.
+     * The first one is found from the left and the last one from the right, so that
+     * each pixel of the line is read at most once.
+     * @param pixels the pixels of the image
+     * @param width width of the image
+     * @param h a particular y-coordinate for a horizontal line
+     * @return the extent of pixels > 125 in x-direction, 1 for an empty line and
+     * -left when no pixel < 125 follows the first one
+     */
+    static int extent(byte[] pixels, int width, int h){
+        int offset = h * width;
+        int left = 0;
+        while (left < width && (pixels[offset + left] & 0xff) <= 125) left++;
+        if (left == width) return 1;
+        int right = width - 1;
+        while (right > left && (pixels[offset + right] & 0xff) >= 125) right--;
+        if (right == left) return -left;
         return right-left+1;
     }
 
@@ -44,16 +85,50 @@ public class Line {
      * @param bp imageProcessor
      * @param w the mid x coord for the pixel
      * @param h the mid y coord for the pixel
-     * @return the number of neighbours around the pixel
+     * @return the number of neighbours around the pixel, at most 2
      */
     public static int nNeighbours(ImageProcessor bp, int w, int h){
-        int n = 0;
-        for(int i = w-1; i <= w+1; i++){
-            for(int j = h-1; j <= h+1; j++){
-                if(bp.getPixel(i, j) > 125) n++;
-                if(n == 3) return n-1;
-            }
+        byte[] pixels = pixels(bp);
+        int width = bp.getWidth();
+        int height = bp.getHeight();
+        boolean inside = w >= 0 && w < width && h >= 0 && h < height;
+        int n = (inside && (pixels[h * width + w] & 0xff) > 125 ? 1 : 0)
+                + NEIGHBOURS[neighbourCode(pixels, width, height, w, h)];
+        return Math.min(n, 3) - 1;
+    }
+
+    /**
+     * The 8 neighbours of a pixel as bits, clockwise from the north: N, NE, E, SE, S, SW, W, NW
+     * from bit 0 to bit 7. A neighbour is set when > 125, and never outside of the image.
+     * @param pixels the pixels of the image
+     * @param width width of the image
+     * @param height height of the image
+     * @param x x coord of the pixel
+     * @param y y coord of the pixel
+     * @return the code of the neighbourhood, between 0 and 255
+     */
+    static int neighbourCode(byte[] pixels, int width, int height, int x, int y){
+        if (x > 0 && y > 0 && x < width - 1 && y < height - 1) {
+            // Inside, no bounds check
+            int i = y * width + x;
+            int above = i - width;
+            int below = i + width;
+            return bit(pixels[above], 0) | bit(pixels[above + 1], 1) | bit(pixels[i + 1], 2)
+                    | bit(pixels[below + 1], 3) | bit(pixels[below], 4) | bit(pixels[below - 1], 5)
+                    | bit(pixels[i - 1], 6) | bit(pixels[above - 1], 7);
         }
-        return n-1;
+        return bit(pixels, width, height, x, y - 1, 0) | bit(pixels, width, height, x + 1, y - 1, 1)
+                | bit(pixels, width, height, x + 1, y, 2) | bit(pixels, width, height, x + 1, y + 1, 3)
+                | bit(pixels, width, height, x, y + 1, 4) | bit(pixels, width, height, x - 1, y + 1, 5)
+                | bit(pixels, width, height, x - 1, y, 6) | bit(pixels, width, height, x - 1, y - 1, 7);
+    }
+
+    private static int bit(byte p, int b){
+        return (p & 0xff) > 125 ? 1 << b : 0;
+    }
+
+    private static int bit(byte[] pixels, int width, int height, int x, int y, int b){
+        if (x < 0 || y < 0 || x >= width || y >= height) return 0;
+        return bit(pixels[y * width + x], b);
     }
 }
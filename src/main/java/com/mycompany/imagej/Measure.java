@@ -103,7 +103,6 @@ public class Measure {
     public static Map<String, Double> measure(ImagePlus im, int meas) {
         ResultsTable rt = new ResultsTable();
         Analyzer an = new Analyzer(im, meas, rt);
-        Analyzer.setResultsTable(rt);
         rt.reset();
         an.measure();
         Map<String, Double> m = new LinkedHashMap<>();
@@ -29,20 +29,26 @@
 
         JsonObject jobj = new JsonObject();
 
-        PixelCount(ImagePlus im0, ImagePlus ori0) {
-            im = im0.duplicate();
-            ori = ori0.duplicate();
+        /**
+         * @param ctx analysis context of the image
+         */
+        PixelCount(Context ctx) {
+            im = ctx.skeleton();
+            ori = ctx.mask();
 
             ip = im.getProcessor();
-            ip.autoThreshold();
-            //ip.invert();
 
             tip = new ArrayList<>();
             int nTips = 0;
-            for (int w = 0; w < ip.getWidth(); w++) {
-                for (int h = 0; h < ip.getHeight(); h++) {
-                    if (ip.get(w, h) > 125) {
-                        int n = Line.nNeighbours(ip, w, h);
+            byte[] pixels = Line.pixels(ip);
+            int width = ip.getWidth();
+            int height = ip.getHeight();
+            // Row-major, as the pixels are stored
+            for (int h = 0; h < height; h++) {
+                for (int w = 0; w < width; w++) {
+                    if ((pixels[h * width + w] & 0xff) > 125) {
+                        // A tip has a single neighbour
+                        int n = Line.NEIGHBOURS[Line.neighbourCode(pixels, width, height, w, h)];
                         if (n == 1) {
                             nTips += 1;
                             tip.add(new Point(w, h));
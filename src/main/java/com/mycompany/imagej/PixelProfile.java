@@ -1,14 +1,10 @@
 package com.mycompany.imagej;
 
-import ij.IJ;
 import ij.ImagePlus;
-import ij.measure.Measurements;
-import ij.measure.ResultsTable;
-import ij.plugin.filter.Analyzer;
+import ij.process.ImageProcessor;
 
 import com.google.gson.JsonObject;
 import com.google.gson.JsonArray;
-import java.awt.*;
 
 public class PixelProfile {
 
@@ -16,17 +12,30 @@ public class PixelProfile {
     public ImagePlus im;
     public JsonObject jobj = new JsonObject();
 
-    PixelProfile(ImagePlus im0,Geom geo){
-        im = im0.duplicate();
+    /**
+     * Profile of the skeleton within slices of the bounding box of the root system
+     * The foreground of each row (within the columns of the bounding box) and of each column
+     * (within the first rows, as high as the bounding box) is counted in a single pass, then
+     * combined as the area fraction measured by ImageJ on one pixel high or wide selections.
+     * @param ctx analysis context of the image
+     */
+    PixelProfile(Context ctx){
+        im = ctx.skeleton();
+        Geom geo = ctx.geom();
+        ImageProcessor ip = im.getProcessor();
 
         double sum, count, max, tot;
         int inc = (int) geo.height / nSlices;
+        int x0 = (int) geo.bX;
+        int x1 = x0 + (int) geo.width;
+        int h = (int) geo.height;
 
-        // The threshold sets the area fraction
-        im.getProcessor().autoThreshold();
-
-        ResultsTable rt = new ResultsTable();
-        Analyzer an;
+        int[] rows = new int[ip.getHeight()];
+        int[] cols = new int[ip.getWidth()];
+        countForeground(ip, x0, x1, h, rows, cols);
+        // Number of pixels of a row or column selection, once clipped to the image
+        int rowSize = Math.max(0, Math.min(x1, ip.getWidth()) - Math.max(x0, 0));
+        int colSize = Math.max(0, Math.min(h, ip.getHeight()));
 
         JsonArray ja = new JsonArray();
         for(int j = 0; j < nSlices; j++){
@@ -37,15 +46,7 @@ public class PixelProfile {
 
             for(int i = ((j+1) * inc)+(int) geo.bY; i > j * inc; i = i-2){
                 // height one slices
-                Rectangle roi = new Rectangle((int) geo.bX, i, (int) geo.width, 1);
-                im.setRoi(roi);
-                Analyzer.setResultsTable(rt);
-                rt.reset();
-                an = new Analyzer(im, Measurements.AREA | Measurements.AREA_FRACTION, rt);
-                an.measure();
-
-                // tot: area that has been selected
-                tot = (rt.getValue("%Area", 0)/100) * rt.getValue("Area", 0);
+                tot = i < rows.length ? foreground(rows[i], rowSize) : Double.NaN;
                 if(tot >= 0){
                     sum += tot;
                     count++;
@@ -68,13 +69,7 @@ public class PixelProfile {
 
         // this measures the average fraction in vertical slices
         for(int i = (int) geo.width ; i > 0; i = i-2){
-            Rectangle Rect2 = new Rectangle(i, 0, 1, (int) geo.height);
-            im.setRoi(Rect2);
-            Analyzer.setResultsTable(rt);
-            rt.reset();
-            an = new Analyzer(im, Measurements.AREA | Measurements.AREA_FRACTION, rt);
-            an.measure();
-            tot = (rt.getValue("%Area", 0)/100) * rt.getValue("Area", 0);
+            tot = i < cols.length ? foreground(cols[i], colSize) : Double.NaN;
             if(tot > 0){
                 sum += tot;
                 count++;
@@ -88,4 +83,43 @@ public class PixelProfile {
         ja.add(jo);
         jobj.add("vertical", jo);
     }
+
+    /**
+     * Count the foreground (non-zero) pixels of the rows and of the columns in a single pass
+     * @param ip the image
+     * @param x0 first column counted in the rows
+     * @param x1 end (excluded) of the columns counted in the rows
+     * @param h number of rows counted in the columns
+     * @param rows count of each row
+     * @param cols count of each column
+     */
+    static void countForeground(ImageProcessor ip, int x0, int x1, int h, int[] rows, int[] cols) {
+        byte[] pixels = (byte[]) ip.convertToByte(false).getPixels();
+        int width = ip.getWidth();
+        int height = ip.getHeight();
+        x0 = Math.max(x0, 0);
+        x1 = Math.min(x1, width);
+        for (int y = 0; y < height; y++) {
+            int offset = y * width;
+            boolean inColumns = y < h;
+            int n = 0;
+            for (int x = 0; x < width; x++) {
+                if (pixels[offset + x] != 0) {
+                    if (x >= x0 && x < x1) n++;
+                    if (inColumns) cols[x]++;
+                }
+            }
+            rows[y] = n;
+        }
+    }
+
+    /**
+     * @param count foreground pixels of the selection
+     * @param size pixels of the selection
+     * @return the foreground area, as measured by ImageJ (area fraction times area), NaN for an empty selection
+     */
+    static double foreground(int count, int size) {
+        double areaFraction = count * 100.0 / size;
+        return (areaFraction / 100) * size;
+    }
 }
@@ -1,6 +1,5 @@
 package com.mycompany.imagej;
 
-import ij.IJ;
 import ij.ImagePlus;
 import ij.measure.Calibration;
 import ij.measure.Measurements;
@@ -24,6 +23,26 @@ public class Preprocess {
     public ImagePlus skel;
 
     Preprocess(ImagePlus im0, boolean blackRoots) {
+        this(im0, blackRoots, 50);
+    }
+
+    /**
+     * @param im0 input image
+     * @param blackRoots true if the roots are black on a white background
+     * @param rootMinSize minimum size of the particles kept as roots, in pixels
+     */
+    Preprocess(ImagePlus im0, boolean blackRoots, double rootMinSize) {
+        this(im0, blackRoots, rootMinSize, true);
+    }
+
+    /**
+     * @param im0 input image
+     * @param blackRoots true if the roots are black on a white background
+     * @param rootMinSize minimum size of the particles kept as roots, in pixels
+     * @param skeleton true to compute the skeleton, left null otherwise
+     */
+    Preprocess(ImagePlus im0, boolean blackRoots, double rootMinSize, boolean skeleton) {
+        this.rootMinSize = rootMinSize;
         im = im0.duplicate();
         ImageProcessor ip = im.getProcessor();
         ResultsTable rt = new ResultsTable();
@@ -45,11 +64,11 @@ public class Preprocess {
         // Remove small particles in the image
         ParticleAnalyzer pa;
         pa = new ParticleAnalyzer(ParticleAnalyzer.SHOW_MASKS, Measurements.AREA, rt, rootMinSize, 10e9, 0, 1);
+        pa.setHideOutputImage(true); // we do not want to display the mask
         pa.analyze(im);
 
         // Get the mask from the ParticuleAnalyser
-        im = IJ.getImage();
-        im.hide(); // Hide the mask, we do not want to display it.
+        im = pa.getOutputImage();
         ip = im.getProcessor();
 
         // Reset calibration
@@ -62,23 +81,33 @@ public class Preprocess {
         im.setCalibration(calDefault);
 
         // Create skeleton
-        skel = new ImagePlus();
-        BinaryProcessor bp = new BinaryProcessor(new ByteProcessor(ip, true));
-        //for(int i = 0; i < 5; i++) bp.smooth(); // Smooth the image for a better skeletonisation
-        bp.autoThreshold();
-        bp.skeletonize();
-        //bp.invert();
-        skel.setProcessor(bp);
+        if (skeleton) skel = skeletonize(im);
 
         // if(saveImages) IJ.save(skel, dirParam.getAbsolutePath()+"/"+baseName+"_skeleton.tiff");
 
-        skel.setRoi(0, 0, ip.getWidth(), ip.getHeight());
         im.setRoi(0, 0, ip.getWidth(), ip.getHeight());
 
         // skel.show(); im.show();
 
     }
 
+    /**
+     * @param im the mask
+     * @return the skeleton of the mask
+     */
+    public static ImagePlus skeletonize(ImagePlus im) {
+        ImageProcessor ip = im.getProcessor();
+        ImagePlus skel = new ImagePlus();
+        BinaryProcessor bp = new BinaryProcessor(new ByteProcessor(ip, true));
+        //for(int i = 0; i < 5; i++) bp.smooth(); // Smooth the image for a better skeletonisation
+        bp.autoThreshold();
+        bp.skeletonize();
+        //bp.invert();
+        skel.setProcessor(bp);
+        skel.setRoi(0, 0, ip.getWidth(), ip.getHeight());
+        return skel;
+    }
+
     public boolean isBlackRoots() { return blackRoots; }
     public void setBlackRoots(boolean blackRoots) { this.blackRoots = blackRoots; }
 }
@@ -0,0 +1,120 @@
+package com.mycompany.imagej;
+
+/**
+ * Min and max pyramid of an image
+ * Each level halves the size of the previous one: a pixel of level l holds the minimum and the
+ * maximum of a block of 2^l x 2^l pixels of the image (smaller on the right and bottom edges).
+ * Each level is built from the previous one, in a single pass. A block whose minimum and maximum
+ * are equal is uniform, and a block holds a value only if it lies between them, so that a search
+ * can skip the blocks of a coarse level and refine only the others at full scale.
+ */
+public class Pyramid {
+
+    // Number of levels of the pyramid of Directionality: blocks of 8 x 8 pixels
+    public static final int LEVELS = 3;
+
+    public final int levels;
+    public final int[] width;
+    public final int[] height;
+    // Minimum and maximum of each block of each level, level 0 being the image itself
+    private final float[][] min;
+    private final float[][] max;
+
+    /**
+     * @param pixels the image, row by row
+     * @param w width of the image
+     * @param h height of the image
+     * @param levels number of levels above the image
+     */
+    public Pyramid(float[] pixels, int w, int h, int levels) {
+        this.levels = levels;
+        width = new int[levels + 1];
+        height = new int[levels + 1];
+        min = new float[levels + 1][];
+        max = new float[levels + 1][];
+        width[0] = w;
+        height[0] = h;
+        min[0] = pixels;
+        max[0] = pixels;
+        for (int l = 1; l <= levels; l++) {
+            int pw = width[l - 1];
+            int ph = height[l - 1];
+            int lw = (pw + 1) / 2;
+            int lh = (ph + 1) / 2;
+            float[] pmin = min[l - 1];
+            float[] pmax = max[l - 1];
+            float[] lmin = new float[lw * lh];
+            float[] lmax = new float[lw * lh];
+            for (int y = 0; y < lh; y++) {
+                int r0 = 2 * y * pw;
+                // The last row of an odd height is its own pair
+                int r1 = 2 * y + 1 < ph ? r0 + pw : r0;
+                for (int x = 0; x < lw; x++) {
+                    int c0 = 2 * x;
+                    int c1 = c0 + 1 < pw ? c0 + 1 : c0;
+                    lmin[y * lw + x] = Math.min(Math.min(pmin[r0 + c0], pmin[r0 + c1]), Math.min(pmin[r1 + c0], pmin[r1 + c1]));
+                    lmax[y * lw + x] = Math.max(Math.max(pmax[r0 + c0], pmax[r0 + c1]), Math.max(pmax[r1 + c0], pmax[r1 + c1]));
+                }
+            }
+            width[l] = lw;
+            height[l] = lh;
+            min[l] = lmin;
+            max[l] = lmax;
+        }
+    }
+
+    /**
+     * @return the minimum of the block (x, y) of a level
+     */
+    public float min(int level, int x, int y) {
+        return min[level][y * width[level] + x];
+    }
+
+    /**
+     * @return the maximum of the block (x, y) of a level
+     */
+    public float max(int level, int x, int y) {
+        return max[level][y * width[level] + x];
+    }
+
+    /**
+     * @return true if every pixel of the block (x, y) of a level has the same value
+     */
+    public boolean uniform(int level, int x, int y) {
+        int i = y * width[level] + x;
+        return min[level][i] == max[level][i];
+    }
+
+    /**
+     * @return true if the block (x, y) of a level may hold the value v, false if none of its pixels does
+     */
+    public boolean contains(int level, int x, int y, float v) {
+        int i = y * width[level] + x;
+        return min[level][i] <= v && v <= max[level][i];
+    }
+
+    /**
+     * Blocks of a level whose neighbourhood, the block and the 8 around it, is uniform
+     * A filter reaching at most 2^level pixels away from a pixel reads a single value over such a block.
+     * @param level the level
+     * @return for each block of the level, true if its neighbourhood is uniform
+     */
+    public boolean[] flat(int level) {
+        int lw = width[level];
+        int lh = height[level];
+        boolean[] flat = new boolean[lw * lh];
+        for (int y = 0; y < lh; y++) {
+            for (int x = 0; x < lw; x++) {
+                float v = min(level, x, y);
+                boolean f = true;
+                for (int j = Math.max(0, y - 1); f && j <= Math.min(lh - 1, y + 1); j++) {
+                    for (int i = Math.max(0, x - 1); f && i <= Math.min(lw - 1, x + 1); i++) {
+                        f = min(level, i, j) == v && max(level, i, j) == v;
+                    }
+                }
+                flat[y * lw + x] = f;
+            }
+        }
+        return flat;
+    }
+}
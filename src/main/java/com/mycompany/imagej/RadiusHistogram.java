@@ -0,0 +1,79 @@
+package com.mycompany.imagej;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import ij.process.ImageProcessor;
+
+import java.util.Arrays;
+
+/**
+ * Histogram of the radius of the roots along their skeleton
+ * The radius of a pixel is its distance in the EDM of the mask, rounded to the closest integer,
+ * kept only on the skeleton (0 elsewhere). The histogram, the volume of each radius (as a cylinder
+ * one pixel high) and the cumulated volume are held in arrays indexed by the radius, only grown
+ * for a larger radius, so that a histogram can be computed again without allocation.
+ */
+public class RadiusHistogram {
+
+    // Radius values, between min and max
+    public int min;
+    public int max;
+    public int[] count = new int[256];
+    public double[] volume = new double[256];
+    public double[] cumVolume = new double[256];
+
+    /**
+     * Compute the histogram in a single, row-major pass over the pixels
+     * @param edm the EDM of the mask, float or 8-bit
+     * @param skel the skeleton of the mask, 8-bit and of the same size
+     */
+    public void compute(ImageProcessor edm, ImageProcessor skel) {
+        float[] radius = DistanceTransform.pixels(edm);
+        byte[] pixels = Line.pixels(skel);
+        int n = Math.min(radius.length, pixels.length);
+        // Rounded as ImageJ converts a float EDM to 8-bit, the infinite distances left out
+        float largest = 0;
+        for (int i = 0; i < n; i++) {
+            if (pixels[i] != 0 && radius[i] > largest && radius[i] < Float.POSITIVE_INFINITY) largest = radius[i];
+        }
+        int size = (int) (largest + 0.5f) + 1;
+        if (size > count.length) {
+            count = new int[size];
+            volume = new double[size];
+            cumVolume = new double[size];
+        }
+        Arrays.fill(count, 0);
+        for (int i = 0; i < n; i++) {
+            if (pixels[i] == 0) count[0]++;
+            else if (radius[i] < Float.POSITIVE_INFINITY) count[(int) (radius[i] + 0.5f)]++;
+        }
+        min = 0;
+        while (min < size - 1 && count[min] == 0) min++;
+        max = size - 1;
+        while (max > 0 && count[max] == 0) max--;
+
+        double tissueVol = 0;
+        for (int i = min; i <= max; i++) {
+            // Calculate tissue volume
+            volume[i] = i * i * Math.PI * count[i];
+            tissueVol += volume[i];
+            cumVolume[i] = tissueVol;
+        }
+    }
+
+    /**
+     * @return the rows of the histogram, from min to max
+     */
+    public JsonArray toJson() {
+        JsonArray ja = new JsonArray();
+        for (int i = min; i <= max; i++) {
+            JsonObject jo = new JsonObject();
+            jo.addProperty("radius", i);
+            jo.addProperty("count", count[i]);
+            jo.addProperty("volume", volume[i]);
+            jo.addProperty("cumVolume", cumVolume[i]);
+            ja.add(jo);
+        }
+        return ja;
+    }
+}
@@ -0,0 +1,59 @@
+package com.mycompany.imagej;
+
+import com.google.gson.JsonObject;
+
+import java.util.List;
+
+/**
+ * Destination of the features of the images
+ * The features of each image are written as soon as the image is analyzed, so that the memory
+ * does not grow with the number of images and a crash keeps every record already written.
+ */
+public interface ResultSink extends AutoCloseable {
+
+    /**
+     * Write the features of one image
+     * @param features the features of the image, as computed by RootAnalysis
+     */
+    default void write(JsonObject features) {
+        write(features, () -> {});
+    }
+
+    /**
+     * Write the features of one image
+     * @param features the features of the image, as computed by RootAnalysis
+     * @param written  run once the record is written, before it is flushed, see RowWriter.println(String, Runnable)
+     */
+    void write(JsonObject features, Runnable written);
+
+    @Override
+    void close();
+
+    /**
+     * @return the writer of the sink flushed last, after which a writer can be chained, see RowWriter.next
+     */
+    RowWriter writer();
+
+    /**
+     * @param file   output file, newline-delimited JSON if it ends with .json, .jsonl or .ndjson, CSV otherwise
+     * @param stages the stages whose features are written, setting the columns of a CSV output
+     * @return the sink, null if the file could not be created
+     */
+    static ResultSink open(String file, List<Stage> stages) {
+        return open(file, false, stages);
+    }
+
+    /**
+     * @param file   output file, newline-delimited JSON if it ends with .json, .jsonl or .ndjson, CSV otherwise
+     * @param append true to add to the records already in the file
+     * @param stages the stages whose features are written, setting the columns of a CSV output
+     * @return the sink, null if the file could not be created
+     */
+    static ResultSink open(String file, boolean append, List<Stage> stages) {
+        String name = file.toLowerCase();
+        if (name.endsWith(".json") || name.endsWith(".jsonl") || name.endsWith(".ndjson")) {
+            return JsonSink.open(file, append);
+        }
+        return CsvSink.open(file, append, stages);
+    }
+}
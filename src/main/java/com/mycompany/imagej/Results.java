@@ -1,9 +1,18 @@
 package com.mycompany.imagej;
 
+import com.google.gson.JsonObject;
 import ij.IJ;
 import ij.ImagePlus;
 
 import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class Results {
 
@@ -20,6 +29,23 @@ public class Results {
     public boolean saveEFD;
     public boolean saveShapes;
     public String shapeFolder;
+    public int nThreads = 1;
+    // Stages of a single image run at the same time, shared by all the images
+    public int stageThreads = 1;
+    private ExecutorService stagePool;
+    // Images to analyze, all the images of dirAll if null
+    public File[] images;
+    // Names of the analyzers to run, the default ones if null
+    public Collection<String> analyzers;
+    // Where the features of each image are written, opened from csvOut if null
+    public ResultSink sink;
+    // Skip the images already in csvOut, as recorded by the journal of a previous run
+    public boolean resume;
+    public Journal journal;
+    // Size of the density grid and number of its rings
+    public int gridRows = DensityGrid.ROWS;
+    public int gridCols = DensityGrid.COLS;
+    public int gridRings = DensityGrid.RINGS;
 
     /**
      * Constructor
@@ -42,6 +68,34 @@ public class Results {
             boolean saveEFD,
             boolean saveShapes,
             String shapeFolder
+    ) {
+        this(dirAll, csvOut, scalePix, scaleCm, blackRoots, rootMinSize, verbatim, saveImages,
+                saveTips, saveTPS, saveEFD, saveShapes, shapeFolder, 1);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param dirAll   = File containing the different images
+     * @param csvOut   = where to save csv file
+     * @param scalePix = scale, in pixels
+     * @param scaleCm  = scale, in cm
+     * @param nThreads = number of images analyzed at the same time
+     */
+    Results(File dirAll,
+            String csvOut,
+            float scalePix,
+            float scaleCm,
+            boolean blackRoots,
+            float rootMinSize,
+            boolean verbatim,
+            boolean saveImages,
+            boolean saveTips,
+            boolean saveTPS,
+            boolean saveEFD,
+            boolean saveShapes,
+            String shapeFolder,
+            int nThreads
     ) {
         // Set up the different variables
         this.dirAll = dirAll;
@@ -57,6 +111,56 @@ public class Results {
         this.saveEFD = saveEFD;
         this.saveShapes = saveShapes;
         this.shapeFolder = shapeFolder;
+        this.nThreads = Math.max(1, nThreads);
+
+        // Analyze the plants
+        analyze();
+    }
+
+    /**
+     * Constructor for the headless batch
+     *
+     * @param images      = the images to analyze
+     * @param csvOut      = where to save the features
+     * @param scalePix    = scale, in pixels
+     * @param scaleCm     = scale, in cm
+     * @param blackRoots  = true if the roots are black on a white background
+     * @param rootMinSize = minimum size of the particles kept as roots, in pixels
+     * @param analyzers   = names of the analyzers to run, the default ones if null
+     * @param nThreads    = number of images analyzed at the same time
+     * @param stageThreads = number of stages of the images run at the same time
+     * @param resume      = true to skip the images already in csvOut
+     * @param gridRows    = number of rows of the density grid
+     * @param gridCols    = number of columns of the density grid
+     * @param gridRings   = number of rings of the density grid
+     */
+    Results(File[] images,
+            String csvOut,
+            float scalePix,
+            float scaleCm,
+            boolean blackRoots,
+            float rootMinSize,
+            Collection<String> analyzers,
+            int nThreads,
+            int stageThreads,
+            boolean resume,
+            int gridRows,
+            int gridCols,
+            int gridRings
+    ) {
+        this.images = images;
+        this.csvOut = csvOut;
+        this.scalePix = scalePix;
+        this.scaleCm = scaleCm;
+        this.blackRoots = blackRoots;
+        this.rootMinSize = rootMinSize;
+        this.analyzers = analyzers;
+        this.nThreads = Math.max(1, nThreads);
+        this.stageThreads = Math.max(1, stageThreads);
+        this.resume = resume;
+        this.gridRows = gridRows;
+        this.gridCols = gridCols;
+        this.gridRings = gridRings;
 
         // Analyze the plants
         analyze();
@@ -66,7 +170,7 @@ public class Results {
      * @param dirAll directory
      * @return return File[] of images
      */
-    public File[] imageFiles(File dirAll) {
+    public static File[] imageFiles(File dirAll) {
         File[] images;
         // Get all the images files in the directory
         images = dirAll.listFiles((file) -> {
@@ -82,55 +186,86 @@ public class Results {
 
     /**
      * Perform the analysis of all the images
+     * The images are analyzed by a pool of nThreads workers, but the results are collected
+     * in the order of the input files. Only a small window of images is kept in flight,
+     * and each result is written to the sink as soon as it is collected, so that the memory
+     * use does not grow with the size of the folder.
+     * The journal (csvOut.journal) records each image written, and with resume the images
+     * already recorded, with the same size and modification time, are skipped.
      */
     public void analyze() {
 
-        ImagePlus nextImage;
-        File[] images = imageFiles(dirAll);
+        File[] images = this.images != null ? this.images : imageFiles(dirAll);
+        if (sink == null && csvOut != null && !csvOut.isEmpty()) {
+            sink = ResultSink.open(csvOut, resume, Stages.select(analyzers));
+            if (sink != null) {
+                journal = new Journal(csvOut + ".journal", resume);
+                // The journal is flushed after the output, never before its rows
+                sink.writer().next = journal.writer();
+            }
+        }
+        if (journal != null && resume) {
+            int nAll = images.length;
+            images = Arrays.stream(images).filter(f -> !journal.isDone(f)).toArray(File[]::new);
+            IJ.log((nAll - images.length) + " images already analyzed, skipped");
+        }
 
         long startD = System.currentTimeMillis();
         int counter = 0;
 
+        ExecutorService pool = Executors.newFixedThreadPool(nThreads);
+        // A separate pool, so that the images waiting for their stages never hold the threads the stages need
+        if (stageThreads > 1) stagePool = Executors.newFixedThreadPool(stageThreads, r -> {
+            Thread t = new Thread(r, "stage");
+            t.setDaemon(true);
+            return t;
+        });
+        Deque<Future<JsonObject>> inFlight = new ArrayDeque<>();
+        int next = 0;
+
         // Navigate the different images in the time series
         int percent = 0;
         double progression;
-        for (int i = 0; i < images.length; i++) {
+        try {
+            for (int i = 0; i < images.length; i++) {
 
-            long startD1 = System.currentTimeMillis();
+                // Keep the workers busy: at most two images per worker are queued
+                while (next < images.length && inFlight.size() < 2 * nThreads) {
+                    final File image = images[next++];
+                    inFlight.add(pool.submit(() -> analyzeImage(image)));
+                }
 
-            // Open the image
-            nextImage = IJ.openImage(images[i].getAbsolutePath());
+                progression = ((double) i / images.length) * 100;
+                if (progression > percent) {
+                    IJ.log(percent + " % of the rsml files converted. " + (images.length - i) + " files remaining.");
+                    System.out.println(percent + " % of the rsml files converted. " + (images.length - i) + " files remaining.");
+                    percent = percent + 5;
+                }
 
-            progression = ((double) i / images.length) * 100;
-            if (progression > percent) {
-                IJ.log(percent + " % of the rsml files converted. " + (images.length - i) + " files remaining.");
-                System.out.println(percent + " % of the rsml files converted. " + (images.length - i) + " files remaining.");
-                percent = percent + 5;
+                // Wait for the oldest image, so that the results stay in input order
+                JsonObject res = null;
+                try {
+                    res = inFlight.poll().get();
+                    counter++;
+                } catch (ExecutionException e) {
+                    System.out.println("I am at the exception handling routine");
+                    e.getCause().printStackTrace(System.out);
+                }
+                if (res != null && sink != null) {
+                    // The entry is in the journal before the row can reach the file, and only flushed after it
+                    final File image = images[i];
+                    sink.write(res, () -> {
+                        if (journal != null) journal.record(image);
+                    });
+                }
             }
-
-            // Reset the ROI to the size of the image. This is done to prevent previously drawn ROI (ImageJ keep them in memory) to empede the analysis
-            nextImage.setRoi(0, 0, nextImage.getWidth(), nextImage.getHeight());
-
-            // Process the name to retrieve the experiment information
-            String baseName = images[i].getName();
-            String fullName = images[i].getAbsolutePath();
-
-            // Measure the image
-            try {
-                RootAnalysis ra = new RootAnalysis(nextImage);
-                // sendAnalysisToCSV(nextImage.getTitle(), nextImage.getWidth(), nextImage.getHeight(), startD1, System.currentTimeMillis());
-            } catch (Exception e) {
-                System.out.println("I am at the exception handling routine");
-                e.printStackTrace(System.out);
-                System.out.println(e.toString());
-            }
-            // Close the current image
-            nextImage.flush();
-            nextImage.close();
-            counter++;
-
-            IJ.log("Loading the image " + (i + 1) + "/" + images.length + " in " + (startD1 - System.currentTimeMillis()));
-
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdownNow();
+            if (stagePool != null) stagePool.shutdownNow();
+            if (sink != null) sink.close();
+            if (journal != null) journal.close();
         }
 
         // Compute the time taken for the analysis
@@ -139,4 +274,46 @@ public class Results {
         IJ.log(counter + " images analyzed in " + (endD - startD) + " ms");
     }
 
+    /**
+     * Open, analyze and close a single image
+     * A failure is reported and isolated to this image, the other ones are not affected.
+     *
+     * @param file the image file
+     * @return the features of the image, null if the analysis failed
+     */
+    JsonObject analyzeImage(File file) {
+
+        long startD1 = System.currentTimeMillis();
+
+        // Open the image
+        ImagePlus nextImage = IJ.openImage(file.getAbsolutePath());
+        if (nextImage == null) {
+            IJ.log("Could not open the image " + file.getAbsolutePath());
+            return null;
+        }
+
+        // Reset the ROI to the size of the image. This is done to prevent previously drawn ROI (ImageJ keep them in memory) to empede the analysis
+        nextImage.setRoi(0, 0, nextImage.getWidth(), nextImage.getHeight());
+
+        // Measure the image
+        JsonObject res = null;
+        try {
+            // The lengths and areas are given in cm, as set by the scale
+            RootAnalysis ra = new RootAnalysis(nextImage, blackRoots, rootMinSize, analyzers, stagePool,
+                    (double) scaleCm / scalePix, gridRows, gridCols, gridRings);
+            res = ra.jobj;
+            // sendAnalysisToCSV(nextImage.getTitle(), nextImage.getWidth(), nextImage.getHeight(), startD1, System.currentTimeMillis());
+        } catch (Exception e) {
+            System.out.println("I am at the exception handling routine");
+            e.printStackTrace(System.out);
+            System.out.println(e.toString());
+        }
+        // Close the current image
+        nextImage.flush();
+        nextImage.close();
+
+        IJ.log("Loading the image " + file.getName() + " in " + (System.currentTimeMillis() - startD1));
+        return res;
+    }
+
 }
@@ -1,22 +1,157 @@
 package com.mycompany.imagej;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
 import ij.ImagePlus;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
 public class RootAnalysis {
+
+    // Features of the image, one entry per analysis
+    public JsonObject jobj = new JsonObject();
+
 	RootAnalysis(ImagePlus im){
-	    boolean blackRoots = true;
-		Preprocess pp = new Preprocess(im, blackRoots);
-        Diameter dia = new Diameter(pp.im, pp.skel);
-        Tissue ts = new Tissue(pp.im, pp.skel);
-        Rotate.getVolume(pp.im);
-        Geometry gy = new Geometry(pp.im, pp.skel);
-        DensityEllipses de = new DensityEllipses(pp.im, gy.geo);
-        DensityRectangles dr = new DensityRectangles(pp.im, gy.geo);
-        DirectionalityAnalysis da = new DirectionalityAnalysis(pp.im, gy.geo);
-        PixelCount pc = new PixelCount(pp.skel, pp.im);
-        PixelProfile px = new PixelProfile(pp.skel, gy.geo);
-        ConvexHull ch = new ConvexHull(pp.im);
-        Coordinates co = new Coordinates(pp.im, gy.geo);
-        DepthProfile dp = new DepthProfile(pp.im, pp.skel);
+	    this(im, true, 50, null);
+	}
+
+    /**
+     * @param im the image to analyze
+     * @param blackRoots true if the roots are black on a white background
+     * @param rootMinSize minimum size of the particles kept as roots, in pixels
+     * @param analyzers names of the analyzers to run, the default ones if null or empty, see Stages
+     */
+	RootAnalysis(ImagePlus im, boolean blackRoots, double rootMinSize, Collection<String> analyzers){
+	    this(im, blackRoots, rootMinSize, analyzers, null);
+	}
+
+    /**
+     * @param im the image to analyze
+     * @param blackRoots true if the roots are black on a white background
+     * @param rootMinSize minimum size of the particles kept as roots, in pixels
+     * @param analyzers names of the analyzers to run, the default ones if null or empty, see Stages
+     * @param pool where the stages run, each one as soon as its artifacts are built; in order on this thread if null
+     */
+	RootAnalysis(ImagePlus im, boolean blackRoots, double rootMinSize, Collection<String> analyzers, Executor pool){
+	    this(im, blackRoots, rootMinSize, analyzers, pool, 1, DensityGrid.ROWS, DensityGrid.COLS, DensityGrid.RINGS);
+	}
+
+    /**
+     * @param im the image to analyze
+     * @param blackRoots true if the roots are black on a white background
+     * @param rootMinSize minimum size of the particles kept as roots, in pixels
+     * @param analyzers names of the analyzers to run, the default ones if null or empty, see Stages
+     * @param pool where the stages run, each one as soon as its artifacts are built; in order on this thread if null
+     * @param pixelSize size of a pixel, the lengths and areas are given in pixels if 1
+     * @param gridRows number of rows of the density grid
+     * @param gridCols number of columns of the density grid
+     * @param gridRings number of rings of the density grid
+     */
+	RootAnalysis(ImagePlus im, boolean blackRoots, double rootMinSize, Collection<String> analyzers, Executor pool,
+                 double pixelSize, int gridRows, int gridCols, int gridRings){
+	    List<Stage> stages = Stages.select(analyzers);
+
+	    // Only build the artifacts read by the selected stages
+	    Set<Stage.Artifact> artifacts = EnumSet.noneOf(Stage.Artifact.class);
+	    for (Stage stage : stages) artifacts.addAll(stage.requires());
+		Preprocess pp = new Preprocess(im, blackRoots, rootMinSize, false);
+		Context ctx = new Context(pp.im, null);
+		ctx.gridRows = gridRows;
+		ctx.gridCols = gridCols;
+		ctx.gridRings = gridRings;
+
+        jobj.addProperty("image", im.getTitle());
+        if (pool == null) {
+            ctx.build(artifacts);
+            for (Stage stage : stages) jobj.add(stage.name(), calibrate(stage, "", stage.run(ctx), pixelSize));
+            return;
+        }
+
+        // Each artifact is built once the ones it reads are, each stage once its artifacts are
+        Stage.Artifact[] all = Stage.Artifact.values();
+        for (int i = all.length - 1; i >= 0; i--) {
+            if (artifacts.contains(all[i])) artifacts.addAll(Arrays.asList(all[i].requires));
+        }
+        Map<Stage.Artifact, CompletableFuture<Void>> built = new EnumMap<>(Stage.Artifact.class);
+        for (Stage.Artifact a : artifacts) {
+            built.put(a, after(built, Arrays.asList(a.requires)).thenRunAsync(() -> ctx.build(a), pool));
+        }
+        List<CompletableFuture<JsonElement>> results = new ArrayList<>();
+        for (Stage stage : stages) {
+            results.add(after(built, stage.requires()).thenApplyAsync(v -> stage.run(ctx), pool));
+        }
+
+        // The entries are added in the order of the stages, whatever the order they finish in
+        for (int i = 0; i < stages.size(); i++) {
+            jobj.add(stages.get(i).name(), calibrate(stages.get(i), "", join(results.get(i)), pixelSize));
+        }
 	}
+
+    /**
+     * @param built the artifacts being built
+     * @param artifacts the artifacts to wait for
+     * @return a future completed once all the artifacts are built
+     */
+    private static CompletableFuture<Void> after(Map<Stage.Artifact, CompletableFuture<Void>> built,
+                                                 Collection<Stage.Artifact> artifacts) {
+        CompletableFuture<?>[] deps = new CompletableFuture<?>[artifacts.size()];
+        int i = 0;
+        for (Stage.Artifact a : artifacts) deps[i++] = built.get(a);
+        return CompletableFuture.allOf(deps);
+    }
+
+    /**
+     * Convert the outputs of a stage measured in pixels to the scale of the image
+     * @param stage the stage
+     * @param output path of the output, such as histogram.radius (the indices of the tables left out), empty for the whole entry
+     * @param el the output
+     * @param pixelSize size of a pixel
+     * @return the output, its numbers scaled by pixelSize to the power of their dimension
+     */
+    static JsonElement calibrate(Stage stage, String output, JsonElement el, double pixelSize) {
+        if (pixelSize == 1) return el;
+        if (el.isJsonObject()) {
+            JsonObject jo = el.getAsJsonObject();
+            for (Map.Entry<String, JsonElement> e : jo.entrySet()) {
+                String path = output.isEmpty() ? e.getKey() : output + "." + e.getKey();
+                e.setValue(calibrate(stage, path, e.getValue(), pixelSize));
+            }
+            return jo;
+        }
+        if (el.isJsonArray()) {
+            JsonArray ja = new JsonArray();
+            for (JsonElement e : el.getAsJsonArray()) ja.add(calibrate(stage, output, e, pixelSize));
+            return ja;
+        }
+        int dimension = stage.dimension(output);
+        if (dimension == 0 || !el.isJsonPrimitive() || !el.getAsJsonPrimitive().isNumber()) return el;
+        return new JsonPrimitive(el.getAsDouble() * Math.pow(pixelSize, dimension));
+    }
+
+    /**
+     * @param f result of a stage
+     * @return the entry computed by the stage
+     * @throws RuntimeException the failure of the stage
+     */
+    private static JsonElement join(CompletableFuture<JsonElement> f) {
+        try {
+            return f.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error) throw (Error) e.getCause();
+            throw e;
+        }
+    }
 }
@@ -1,118 +1,221 @@
 package com.mycompany.imagej;
 
-import ij.IJ;
 import ij.ImagePlus;
+import ij.gui.PolygonRoi;
 import ij.gui.Roi;
+import ij.plugin.RoiRotator;
 import ij.process.ImageProcessor;
 
+import java.awt.Polygon;
 import java.awt.Rectangle;
 import java.lang.Math;
+import java.util.Arrays;
 
 class Rotate {
-	/**
-	 * 
-	 * @param im ImagePlus
-	 */
-    public static double[] getWH(ImagePlus im) {
-        double[] a = new double[2];
-        im.getProcessor().autoThreshold();
-        IJ.run(im, "Create Selection", "");
-        Roi select = im.getRoi();
-        ImageProcessor Shape = im.getProcessor();
-        Shape.setRoi(select.getBounds());
-        Shape = Shape.crop();
-        im.setProcessor(Shape);
-        // im.show();
-        a[0] = im.getWidth();
-        a[1] = im.getHeight();
-        return a;
+    /**
+     * @param im input image
+     * @return rotation angle giving the smallest height of the root system, between -15 and 15 degrees
+     */
+    public static double getAngle(ImagePlus im) {
+        return getAngle(im, -15., 15.);
     }
 
+    /**
+     * Find the rotation angle that gives the smallest height of the root system
+     * Rotating the image by a (as ImageProcessor.rotate does) maps a pixel to the height
+     * x.sin(a) + y.cos(a), so the height of the root system is the extent of this projection,
+     * which only depends on the convex hull of the foreground. Between two angles where a
+     * hull edge becomes horizontal, the extent is a concave function of the angle, so the
+     * minimum is found among these angles and the bounds of the range, without rotating the image.
+     * @param im input image, binary
+     * @param begin beginning angle, in degrees
+     * @param end ending angle, in degrees
+     * @return best rotation angle, the closest to 0 in case of ties
+     */
+    public static double getAngle(ImagePlus im, double begin, double end) {
+        return getAngle(convexHull(rowExtremes(im.getProcessor())), begin, end);
+    }
 
     /**
-     * @param im input image
-     * @return best rotation angle
+     * @param hull convex hull of the foreground, as {x[], y[]}
+     * @param begin beginning angle, in degrees
+     * @param end ending angle, in degrees
+     * @return best rotation angle, the closest to 0 in case of ties
      */
-    public static double getAngle(ImagePlus im) {
-        double angle = getAngle(im, -15., 1., 15.);
-        angle = getAngle(im, angle, 0.1, angle + 1);
-        return angle;
+    private static double getAngle(int[][] hull, double begin, double end) {
+        int n = hull[0].length;
+        if (n < 2) return 0;
+
+        double best = 0;
+        double hmin = Double.MAX_VALUE;
+        double[] candidates = new double[n + 3];
+        candidates[0] = begin;
+        candidates[1] = end;
+        candidates[2] = Math.max(begin, Math.min(end, 0));
+        int nc = 3;
+        for (int i = 0; i < n; i++) {
+            int dx = hull[0][(i + 1) % n] - hull[0][i];
+            int dy = hull[1][(i + 1) % n] - hull[1][i];
+            if (dx == 0) continue;
+            // The edge is horizontal once rotated: dx.sin(a) + dy.cos(a) = 0
+            double a = Math.toDegrees(Math.atan(-(double) dy / dx));
+            if (a >= begin && a <= end) candidates[nc++] = a;
+        }
+        for (int c = 0; c < nc; c++) {
+            double a = candidates[c];
+            double h = projectedExtent(hull, a);
+            if (h < hmin - 1e-9 || (h < hmin + 1e-9 && Math.abs(a) < Math.abs(best))) {
+                hmin = h;
+                best = a;
+            }
+        }
+        return best;
     }
 
     /**
-     * @param im input image
-     * @param begin beginning angle
-     * @param step step
-     * @param end ending angle
-     * @return best rotation angle
+     * @param hull polygon, as {x[], y[]}
+     * @param angle rotation angle, in degrees
+     * @return extent of the polygon along the vertical axis once rotated
      */
-    public static double getAngle(ImagePlus im, double begin, double step, double end){
-        double hmin = 1e10;
-        double angle = begin;
-        
-        System.out.println("Finding min angle");
-        do {
-            ImagePlus im2 = im.duplicate();
-            IJ.run(im2, "Select All", "");
-            IJ.run(im2, "Rotate...", "angle=" + angle);
-            Roi roi = im2.getRoi();
-            Rectangle r = roi.getBounds();
-            IJ.run(im2, "Canvas Size...", "width="+r.width+" height="+r.height+
-                   " position=Center zero");
-            
-            ImageProcessor ip = im2.getProcessor();
-            ip.setInterpolationMethod(ImageProcessor.BILINEAR);
-            ip.rotate(angle);
-            im2.setProcessor(ip);
-            
-            double[] wh = getWH(im2);
-            if(wh[1] > hmin) {
-                break;
+    static double projectedExtent(int[][] hull, double angle) {
+        double sin = Math.sin(Math.toRadians(angle));
+        double cos = Math.cos(Math.toRadians(angle));
+        double min = Double.MAX_VALUE;
+        double max = -Double.MAX_VALUE;
+        for (int i = 0; i < hull[0].length; i++) {
+            double y = hull[0][i] * sin + hull[1][i] * cos;
+            if (y < min) min = y;
+            if (y > max) max = y;
+        }
+        return max - min;
+    }
+
+    /**
+     * The leftmost and rightmost foreground pixels of each row, which hold the convex hull of the foreground
+     * The foreground is chosen as in Util.createSelection.
+     * @param ip binary image
+     * @return the points, as {x[], y[]}
+     */
+    static int[][] rowExtremes(ImageProcessor ip) {
+        int fg = ip.isInvertedLut() ? 255 : 0;
+        int w = ip.getWidth();
+        int h = ip.getHeight();
+        byte[] pixels = Line.pixels(ip);
+        int[] xs = new int[2 * h];
+        int[] ys = new int[2 * h];
+        int n = 0;
+        for (int y = 0; y < h; y++) {
+            int offset = y * w;
+            int left = 0;
+            while (left < w && (pixels[offset + left] & 0xff) != fg) left++;
+            if (left == w) continue;
+            int right = w - 1;
+            while ((pixels[offset + right] & 0xff) != fg) right--;
+            xs[n] = left;
+            ys[n++] = y;
+            if (right != left) {
+                xs[n] = right;
+                ys[n++] = y;
             }
-            hmin = wh[1];
-            System.out.println(angle + " " + hmin);
-            System.out.flush();
-            angle += step;
-            if (angle > end) {
-                break;
+        }
+        return new int[][]{Arrays.copyOf(xs, n), Arrays.copyOf(ys, n)};
+    }
+
+    /**
+     * Convex hull of a set of points (monotone chain)
+     * @param pts the points, as {x[], y[]}
+     * @return the vertices of the hull, counter-clockwise, as {x[], y[]}
+     */
+    static int[][] convexHull(int[][] pts) {
+        int n = pts[0].length;
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Arrays.sort(order, (i, j) -> pts[0][i] != pts[0][j] ? pts[0][i] - pts[0][j] : pts[1][i] - pts[1][j]);
+        if (n < 3) {
+            int[][] hull = new int[2][n];
+            for (int i = 0; i < n; i++) {
+                hull[0][i] = pts[0][order[i]];
+                hull[1][i] = pts[1][order[i]];
             }
-        } while(true);
-        return angle - step;
-	}
+            return hull;
+        }
+
+        int[] hx = new int[2 * n];
+        int[] hy = new int[2 * n];
+        int k = 0;
+        // Lower hull
+        for (int c = 0; c < n; c++) {
+            int i = order[c];
+            while (k >= 2 && cross(hx[k - 2], hy[k - 2], hx[k - 1], hy[k - 1], pts[0][i], pts[1][i]) <= 0) k--;
+            hx[k] = pts[0][i];
+            hy[k++] = pts[1][i];
+        }
+        // Upper hull
+        int lower = k + 1;
+        for (int c = n - 2; c >= 0; c--) {
+            int i = order[c];
+            while (k >= lower && cross(hx[k - 2], hy[k - 2], hx[k - 1], hy[k - 1], pts[0][i], pts[1][i]) <= 0) k--;
+            hx[k] = pts[0][i];
+            hy[k++] = pts[1][i];
+        }
+        // The first point closes the upper hull
+        k--;
+        return new int[][]{Arrays.copyOf(hx, k), Arrays.copyOf(hy, k)};
+    }
+
+    private static long cross(int ox, int oy, int ax, int ay, int bx, int by) {
+        return (long) (ax - ox) * (by - oy) - (long) (ay - oy) * (bx - ox);
+    }
+
+    /**
+     * @param w width of the image
+     * @param h height of the image
+     * @param angle rotation angle, in degrees
+     * @return the bounds of the image once rotated around its center
+     */
+    static Rectangle rotatedBounds(int w, int h, double angle) {
+        Polygon p = new Roi(0, 0, w, h).getPolygon();
+        Roi rotated = RoiRotator.rotate(new PolygonRoi(p, Roi.POLYGON), angle);
+        return rotated.getBounds();
+    }
 
     public static double getVolumeFromExtents(ImagePlus im) {
         ImageProcessor ip = im.getProcessor();
+        byte[] pixels = Line.pixels(ip);
         double vol = 0;
         for(int h = 0; h < ip.getHeight(); h++){
-            int n = Line.extent(ip, h);
+            int n = Line.extent(pixels, ip.getWidth(), h);
             vol += (n * n / 4.0) * (Math.PI);
         }
         return vol;
     }
 
-    public static double getVolume(ImagePlus im) {
+    /**
+     * @param im0 input image, left untouched
+     * @return volume of the root system, computed from the extents once straightened
+     */
+    public static double getVolume(ImagePlus im0) {
+        ImagePlus im = im0.duplicate();
         System.out.println("Vol b4: " + getVolumeFromExtents(im));
 
         double angle = getAngle(im);
 
         /*
         if (false) {
-            IJ.run(im, "Select All", "");
-            IJ.run(im, "Rotate...", "angle=" + angle);
-            Roi roi = im.getRoi();
-            Rectangle r = roi.getBounds();
-            IJ.run(im, "Canvas Size...", "width="+r.width+" height="+r.height+
-                   " position=Center zero");
+            Rectangle r = rotatedBounds(im.getWidth(), im.getHeight(), angle);
+            im.setProcessor(new CanvasResizer().expandImage(im.getProcessor(), r.width, r.height,
+                    (r.width - im.getWidth()) / 2, (r.height - im.getHeight()) / 2));
         }
         */
 
         ImageProcessor ip = im.getProcessor();
+        // The corners uncovered by the rotation are filled with the background of the mask
+        ip.setBackgroundValue(ip.isInvertedLut() ? 0 : 255);
         ip.setInterpolate(true);
         ip.setInterpolationMethod(ImageProcessor.BILINEAR);
         ip.rotate(angle);
         im.setProcessor(ip);
         im.setTitle("Rotated");
-        im.show();
         
         double vol = getVolumeFromExtents(im);
         System.out.println("Vol af: " + getVolumeFromExtents(im));
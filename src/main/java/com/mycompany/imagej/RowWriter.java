@@ -0,0 +1,158 @@
+package com.mycompany.imagej;
+
+import ij.IJ;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Buffered writer for the output files, flushed according to a policy instead of after every line
+ * The writers still open are flushed by a shutdown hook, so that an interrupted run keeps its data.
+ */
+public class RowWriter extends PrintWriter {
+
+    /** When the rows written are pushed to the file */
+    public enum Flush {
+        /** every n rows */
+        ROWS,
+        /** at the end of each image */
+        IMAGE,
+        /** only when the writer is closed */
+        CLOSE
+    }
+
+    // Policy of the writers opened by Util.initializeCSV
+    public static Flush defaultFlush = Flush.IMAGE;
+    public static int defaultRows = 1000;
+
+    static final int BUFFER_SIZE = 1 << 20;
+
+    private static final Set<RowWriter> open = ConcurrentHashMap.newKeySet();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            // A writer flushed after another one is flushed by it, never first
+            Set<RowWriter> after = new HashSet<>();
+            for (RowWriter pw : open) if (pw.next != null) after.add(pw.next);
+            for (RowWriter pw : open) if (!after.contains(pw)) pw.flush();
+        }));
+    }
+
+    public Flush flush;
+    public int rows;
+    // Writer flushed after this one, so that it never refers to rows not yet in the file
+    public RowWriter next;
+    private int pending;
+
+    /**
+     * @param out   the destination
+     * @param flush the flush policy
+     * @param rows  number of rows between two flushes, for Flush.ROWS
+     */
+    public RowWriter(Writer out, Flush flush, int rows) {
+        super(new BufferedWriter(out, BUFFER_SIZE));
+        this.flush = flush;
+        this.rows = Math.max(1, rows);
+        open.add(this);
+    }
+
+    /**
+     * Set the default policy from its description
+     * @param policy "image", "close", or "rows:n"
+     */
+    public static void setDefault(String policy) {
+        if (policy.equals("image")) {
+            defaultFlush = Flush.IMAGE;
+        } else if (policy.equals("close")) {
+            defaultFlush = Flush.CLOSE;
+        } else if (policy.startsWith("rows:")) {
+            int n;
+            try {
+                n = Integer.parseInt(policy.substring(5));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Unknown flush policy: " + policy);
+            }
+            if (n < 1) throw new IllegalArgumentException("Unknown flush policy: " + policy);
+            defaultFlush = Flush.ROWS;
+            defaultRows = n;
+        } else {
+            throw new IllegalArgumentException("Unknown flush policy: " + policy);
+        }
+    }
+
+    /**
+     * End a row, flushing every n rows with Flush.ROWS
+     * All the println variants end with this call.
+     */
+    @Override
+    public void println() {
+        synchronized (lock) {
+            super.println();
+            if (flush == Flush.ROWS && ++pending >= rows) {
+                pending = 0;
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Write a row, running an action once the row is in the buffer but before it can be flushed
+     * The writer is locked meanwhile, so that the action is never seen without the row.
+     * @param row     the row
+     * @param written the action, such as the journal entry of the row
+     */
+    public void println(String row, Runnable written) {
+        synchronized (lock) {
+            print(row);
+            written.run();
+            println();
+        }
+    }
+
+    @Override
+    public void flush() {
+        synchronized (lock) {
+            super.flush();
+            if (next != null) next.flush();
+        }
+    }
+
+    /**
+     * Mark the end of the rows of an image, flushing with Flush.IMAGE
+     */
+    public void endImage() {
+        if (flush == Flush.IMAGE) flush();
+    }
+
+    @Override
+    public void close() {
+        open.remove(this);
+        super.close();
+    }
+
+    /**
+     * Drop the last row of a file if it was cut by a crash, so that new rows can be appended
+     * @param file the file, nothing is done if it does not exist
+     */
+    public static void trimPartialRow(File file) {
+        if (!file.exists()) return;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long end = raf.length();
+            while (end > 0) {
+                raf.seek(end - 1);
+                if (raf.read() == '\n') break;
+                end--;
+            }
+            raf.setLength(end);
+        } catch (IOException e) {
+            IJ.log("Could not read file " + file);
+        }
+    }
+}
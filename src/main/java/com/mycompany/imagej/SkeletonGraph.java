@@ -0,0 +1,156 @@
+package com.mycompany.imagej;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import ij.process.ImageProcessor;
+
+import java.util.Arrays;
+
+/**
+ * Graph of the skeleton: the segments between its nodes, with their length, radius and order
+ * The segments are the edges of SkeletonTopology. The radius of a segment is read from the EDM
+ * along its path pixels and its two end pixels, with no pass over the whole image. The order is the
+ * Strahler order of the segment in a tree spanning each connected part of the skeleton from its
+ * top node: 1 for the segments ending at a tip, and one more where two segments of the same
+ * order meet. The segments closing a loop are left out of the tree, with an order of 1.
+ * The adjacency of the nodes is held in int arrays (compressed rows), with no object per node or segment.
+ */
+public class SkeletonGraph {
+
+    public SkeletonTopology topology;
+    public int nSegments;
+    public double[] length;
+    public double[] meanRadius;
+    public double[] maxRadius;
+    public int[] order;
+    // Segments of each node: adjEdge[adjStart[n]] to adjEdge[adjStart[n + 1] - 1]
+    public int[] adjStart;
+    public int[] adjEdge;
+    public JsonObject jobj = new JsonObject();
+
+    /**
+     * @param ctx analysis context of the image
+     */
+    SkeletonGraph(Context ctx) {
+        this(ctx.topology(), ctx.edm().getProcessor());
+    }
+
+    /**
+     * @param topology topology of the skeleton
+     * @param edm Euclidean distance map of the mask
+     */
+    SkeletonGraph(SkeletonTopology topology, ImageProcessor edm) {
+        this.topology = topology;
+        nSegments = topology.nEdges;
+        int nNodes = topology.nNodes;
+        length = Arrays.copyOf(topology.edgeLength, nSegments);
+
+        // Radius along the path pixels of each segment
+        float[] radius = DistanceTransform.pixels(edm);
+        double[] sum = new double[nSegments];
+        int[] count = new int[nSegments];
+        maxRadius = new double[nSegments];
+        meanRadius = new double[nSegments];
+        for (int e = 0; e < nSegments; e++) {
+            for (int p = topology.edgePathStart[e]; p < topology.edgePathStart[e + 1]; p++) {
+                addRadius(e, radius[topology.edgePath[p]], sum, count);
+            }
+            addRadius(e, radius[topology.edgeStart[e]], sum, count);
+            addRadius(e, radius[topology.edgeEnd[e]], sum, count);
+            meanRadius[e] = sum[e] / count[e];
+        }
+
+        // Adjacency, in compressed rows
+        adjStart = new int[nNodes + 1];
+        for (int e = 0; e < nSegments; e++) {
+            adjStart[topology.edgeFrom[e] + 1]++;
+            adjStart[topology.edgeTo[e] + 1]++;
+        }
+        for (int n = 0; n < nNodes; n++) adjStart[n + 1] += adjStart[n];
+        adjEdge = new int[adjStart[nNodes]];
+        int[] fill = Arrays.copyOf(adjStart, nNodes);
+        for (int e = 0; e < nSegments; e++) {
+            adjEdge[fill[topology.edgeFrom[e]]++] = e;
+            adjEdge[fill[topology.edgeTo[e]]++] = e;
+        }
+
+        // Spanning trees, breadth first from the first (top) node of each connected part
+        int[] parentEdge = new int[nNodes];
+        Arrays.fill(parentEdge, -1);
+        boolean[] reached = new boolean[nNodes];
+        int[] queue = new int[nNodes];
+        int tail = 0;
+        for (int root = 0; root < nNodes; root++) {
+            if (reached[root]) continue;
+            reached[root] = true;
+            int head = tail;
+            queue[tail++] = root;
+            while (head < tail) {
+                int n = queue[head++];
+                for (int a = adjStart[n]; a < adjStart[n + 1]; a++) {
+                    int e = adjEdge[a];
+                    int m = other(e, n);
+                    if (reached[m]) continue;
+                    reached[m] = true;
+                    parentEdge[m] = e;
+                    queue[tail++] = m;
+                }
+            }
+        }
+
+        // Strahler order, from the tips up to the roots of the trees
+        order = new int[nSegments];
+        Arrays.fill(order, 1);
+        int[] maxChild = new int[nNodes];
+        int[] nMaxChild = new int[nNodes];
+        for (int q = tail - 1; q >= 0; q--) {
+            int n = queue[q];
+            int e = parentEdge[n];
+            if (e < 0) continue;
+            order[e] = maxChild[n] == 0 ? 1 : nMaxChild[n] > 1 ? maxChild[n] + 1 : maxChild[n];
+            int parent = other(e, n);
+            if (order[e] > maxChild[parent]) {
+                maxChild[parent] = order[e];
+                nMaxChild[parent] = 1;
+            } else if (order[e] == maxChild[parent]) {
+                nMaxChild[parent]++;
+            }
+        }
+
+        double totalLength = 0;
+        int maxOrder = 0;
+        for (int e = 0; e < nSegments; e++) {
+            totalLength += length[e];
+            maxOrder = Math.max(maxOrder, order[e]);
+        }
+        jobj.addProperty("totalLength", totalLength);
+        jobj.addProperty("maxOrder", maxOrder);
+        jobj.add("length", toJson(length));
+        jobj.add("meanRadius", toJson(meanRadius));
+        jobj.add("maxRadius", toJson(maxRadius));
+        JsonArray ja = new JsonArray();
+        for (int o : order) ja.add(o);
+        jobj.add("order", ja);
+    }
+
+    private void addRadius(int e, double r, double[] sum, int[] count) {
+        sum[e] += r;
+        count[e]++;
+        if (r > maxRadius[e]) maxRadius[e] = r;
+    }
+
+    /**
+     * @param e a segment
+     * @param n one of its nodes
+     * @return its other node
+     */
+    private int other(int e, int n) {
+        return topology.edgeFrom[e] == n ? topology.edgeTo[e] : topology.edgeFrom[e];
+    }
+
+    private static JsonArray toJson(double[] values) {
+        JsonArray ja = new JsonArray();
+        for (double v : values) ja.add(v);
+        return ja;
+    }
+}
@@ -0,0 +1,312 @@
+package com.mycompany.imagej;
+
+import com.google.gson.JsonObject;
+import ij.process.ImageProcessor;
+
+import java.util.Arrays;
+
+/**
+ * Topology of the skeleton: each pixel classified from its 8-neighbourhood, and the edges between the nodes
+ * A pixel with a single neighbour is an endpoint (a tip, as counted by PixelCount) and one with two
+ * neighbours is a path. Otherwise, it is classified by its crossing number, the number of background
+ * to foreground transitions around it: 3 for a branch point, 4 for a crossing, and a path below
+ * (a thicker spot of the skeleton). Adjacent branch points and crossings form a single junction.
+ * The endpoints and the junctions are the nodes, and the edges follow the path pixels from node
+ * to node, measuring their length on the way (1 per step, and sqrt(2) per diagonal step).
+ * Both the classification and the tracing read each pixel a bounded number of times, with no
+ * allocation per pixel. Only the nodes and the edges are kept, with the path pixels of each edge:
+ * the per-pixel arrays are dropped once they are traced.
+ */
+public class SkeletonTopology {
+
+    public static final byte BACKGROUND = 0, ISOLATED = 1, ENDPOINT = 2, PATH = 3, BRANCH = 4, CROSSING = 5;
+
+    /**
+     * Number of background to foreground transitions around a neighbourhood, indexed by Line.neighbourCode
+     */
+    static final int[] CROSSINGS = new int[256];
+    /**
+     * Class of a skeleton pixel, indexed by the Line.neighbourCode of its neighbourhood
+     */
+    static final byte[] CLASS = new byte[256];
+    static {
+        for (int code = 0; code < 256; code++) {
+            int n = 0;
+            for (int b = 0; b < 8; b++) {
+                if ((code >> b & 1) == 0 && (code >> ((b + 1) % 8) & 1) == 1) n++;
+            }
+            CROSSINGS[code] = n;
+            int neighbours = Line.NEIGHBOURS[code];
+            if (neighbours == 0) CLASS[code] = ISOLATED;
+            else if (neighbours == 1) CLASS[code] = ENDPOINT;
+            else if (neighbours == 2 || n <= 2) CLASS[code] = PATH;
+            else if (n == 3) CLASS[code] = BRANCH;
+            else CLASS[code] = CROSSING;
+        }
+    }
+
+    // Neighbours in the order of the bits of Line.neighbourCode
+    static final int[] DX = {0, 1, 1, 1, 0, -1, -1, -1};
+    static final int[] DY = {-1, -1, 0, 1, 1, 1, 0, -1};
+    // The orthogonal neighbours are followed first, so that the corners of a staircase are not skipped
+    static final int[] ORDER = {0, 2, 4, 6, 1, 3, 5, 7};
+    private static final double SQRT2 = Math.sqrt(2);
+
+    public int width;
+    public int height;
+    // Class of each pixel and node of each node pixel, plus one, 0 for the other pixels, while tracing
+    private byte[] type;
+    private int[] node;
+    public int nTips;
+    public int nBranches;
+    public int nCrossings;
+    // Nodes, at their first pixel in row-major order
+    public int nNodes;
+    public int[] nodeX;
+    public int[] nodeY;
+    public int[] degree;
+    // Edges, as node indices, with the number of path pixels between the nodes, their length,
+    // and the node pixels they start and end at
+    public int nEdges;
+    public int[] edgeFrom;
+    public int[] edgeTo;
+    public int[] edgePixels;
+    public double[] edgeLength;
+    public int[] edgeStart;
+    public int[] edgeEnd;
+    // Path pixels of each edge: edgePath[edgePathStart[e]] to edgePath[edgePathStart[e + 1] - 1]
+    public int[] edgePath;
+    public int[] edgePathStart;
+    public JsonObject jobj = new JsonObject();
+    // Path pixels already traced, and the pixels of the path being traced
+    private boolean[] visited;
+    private int[] path;
+    // Number of path pixels of the edges traced
+    private int nPath;
+
+    /**
+     * @param ip the skeleton, foreground > 125
+     */
+    SkeletonTopology(ImageProcessor ip) {
+        width = ip.getWidth();
+        height = ip.getHeight();
+        byte[] pixels = Line.pixels(ip);
+        type = new byte[width * height];
+        node = new int[width * height];
+
+        // Classify, and merge the adjacent junction pixels as they are found
+        int[] nodePixels = new int[16];
+        int[] parent = new int[16];
+        int nPixels = 0;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int i = y * width + x;
+                if ((pixels[i] & 0xff) <= 125) continue;
+                byte t = CLASS[Line.neighbourCode(pixels, width, height, x, y)];
+                type[i] = t;
+                if (!isNode(t)) continue;
+                if (nPixels == nodePixels.length) {
+                    nodePixels = Arrays.copyOf(nodePixels, 2 * nPixels);
+                    parent = Arrays.copyOf(parent, 2 * nPixels);
+                }
+                nodePixels[nPixels] = i;
+                parent[nPixels] = nPixels;
+                node[i] = ++nPixels;
+                if (t == ENDPOINT) {
+                    nTips++;
+                    continue;
+                }
+                // Neighbours already scanned: W, NW, N, NE
+                for (int d = 6; d <= 9; d++) {
+                    int nx = x + DX[d % 8];
+                    int ny = y + DY[d % 8];
+                    if (nx < 0 || ny < 0 || nx >= width) continue;
+                    int j = ny * width + nx;
+                    if (type[j] == BRANCH || type[j] == CROSSING) union(parent, node[i] - 1, node[j] - 1);
+                }
+            }
+        }
+
+        // Number the nodes, in the order of their first pixel
+        int[] nodeOf = new int[nPixels];
+        nodeX = new int[16];
+        nodeY = new int[16];
+        for (int p = 0; p < nPixels; p++) {
+            int root = find(parent, p);
+            if (root == p) {
+                if (nNodes == nodeX.length) {
+                    nodeX = Arrays.copyOf(nodeX, 2 * nNodes);
+                    nodeY = Arrays.copyOf(nodeY, 2 * nNodes);
+                }
+                nodeX[nNodes] = nodePixels[p] % width;
+                nodeY[nNodes] = nodePixels[p] / width;
+                nodeOf[p] = nNodes++;
+            } else {
+                nodeOf[p] = nodeOf[root];
+            }
+            node[nodePixels[p]] = nodeOf[p] + 1;
+        }
+
+        // Trace the edges from each node pixel, each path pixel is visited once
+        edgeFrom = new int[16];
+        edgeTo = new int[16];
+        edgePixels = new int[16];
+        edgeLength = new double[16];
+        edgeStart = new int[16];
+        edgeEnd = new int[16];
+        edgePath = new int[64];
+        visited = new boolean[width * height];
+        path = new int[64];
+        for (int p = 0; p < nPixels; p++) {
+            int start = nodePixels[p];
+            int from = nodeOf[p];
+            int sx = start % width;
+            int sy = start / width;
+            for (int d : ORDER) {
+                int x = sx + DX[d];
+                int y = sy + DY[d];
+                if (x < 0 || y < 0 || x >= width || y >= height) continue;
+                int i = y * width + x;
+                if (isNode(type[i])) {
+                    // Adjacent nodes, recorded once
+                    if (node[i] - 1 > from) addEdge(from, node[i] - 1, 0, step(d), start, i);
+                } else if (type[i] == PATH && !visited[i]) {
+                    trace(from, start, d, i);
+                }
+            }
+        }
+
+        // A junction with more than 3 edges is a crossing
+        degree = new int[nNodes];
+        for (int e = 0; e < nEdges; e++) {
+            degree[edgeFrom[e]]++;
+            degree[edgeTo[e]]++;
+        }
+        for (int n = 0; n < nNodes; n++) {
+            if (type[nodeY[n] * width + nodeX[n]] == ENDPOINT) continue;
+            if (degree[n] > 3) nCrossings++;
+            else nBranches++;
+        }
+        edgePath = Arrays.copyOf(edgePath, nPath);
+        edgePathStart = new int[nEdges + 1];
+        for (int e = 0; e < nEdges; e++) edgePathStart[e + 1] = edgePathStart[e] + edgePixels[e];
+        type = null;
+        node = null;
+        visited = null;
+        path = null;
+        toJson();
+    }
+
+    /**
+     * Follow the path pixels from a node until another node is reached
+     * The starting node ends the path only once the path has left it (a loop). A path that ends
+     * without reaching a node (a dead end, or a path already traced) is not an edge.
+     * @param from index of the node
+     * @param start pixel of the node
+     * @param d direction of the first path pixel from the node
+     * @param cur first path pixel
+     */
+    private void trace(int from, int start, int d, int cur) {
+        int count = 0;
+        double length = step(d);
+        boolean away = false;
+        while (true) {
+            visited[cur] = true;
+            if (count == path.length) path = Arrays.copyOf(path, 2 * count);
+            path[count++] = cur;
+            int cx = cur % width;
+            int cy = cur / width;
+            int next = -1;
+            boolean nearStart = false;
+            int nextD = -1;
+            for (int n : ORDER) {
+                int x = cx + DX[n];
+                int y = cy + DY[n];
+                if (x < 0 || y < 0 || x >= width || y >= height) continue;
+                int i = y * width + x;
+                if (isNode(type[i])) {
+                    if (node[i] - 1 == from && !away) {
+                        nearStart = true;
+                        continue;
+                    }
+                    addEdge(from, node[i] - 1, count, length + step(n), start, i);
+                    return;
+                }
+                if (next == -1 && type[i] == PATH && !visited[i]) {
+                    next = i;
+                    nextD = n;
+                }
+            }
+            if (!nearStart) away = true;
+            if (next == -1) return;
+            length += step(nextD);
+            cur = next;
+        }
+    }
+
+    /**
+     * @param pixels number of path pixels of the edge, the first ones of path
+     */
+    private void addEdge(int from, int to, int pixels, double length, int start, int end) {
+        if (nPath + pixels > edgePath.length) edgePath = Arrays.copyOf(edgePath, Math.max(2 * edgePath.length, nPath + pixels));
+        System.arraycopy(path, 0, edgePath, nPath, pixels);
+        nPath += pixels;
+        if (nEdges == edgeFrom.length) {
+            edgeFrom = Arrays.copyOf(edgeFrom, 2 * nEdges);
+            edgeTo = Arrays.copyOf(edgeTo, 2 * nEdges);
+            edgePixels = Arrays.copyOf(edgePixels, 2 * nEdges);
+            edgeLength = Arrays.copyOf(edgeLength, 2 * nEdges);
+            edgeStart = Arrays.copyOf(edgeStart, 2 * nEdges);
+            edgeEnd = Arrays.copyOf(edgeEnd, 2 * nEdges);
+        }
+        edgeFrom[nEdges] = from;
+        edgeTo[nEdges] = to;
+        edgePixels[nEdges] = pixels;
+        edgeLength[nEdges] = length;
+        edgeStart[nEdges] = start;
+        edgeEnd[nEdges++] = end;
+    }
+
+    /**
+     * @param d direction of a neighbour
+     * @return distance to the neighbour, sqrt(2) on the diagonals
+     */
+    static double step(int d) {
+        return (d & 1) == 0 ? 1 : SQRT2;
+    }
+
+    private static int find(int[] parent, int p) {
+        while (parent[p] != p) {
+            parent[p] = parent[parent[p]];
+            p = parent[p];
+        }
+        return p;
+    }
+
+    private static void union(int[] parent, int a, int b) {
+        a = find(parent, a);
+        b = find(parent, b);
+        // The first pixel stays the root
+        if (a < b) parent[b] = a;
+        else if (b < a) parent[a] = b;
+    }
+
+    static boolean isNode(byte t) {
+        return t == ENDPOINT || t == BRANCH || t == CROSSING;
+    }
+
+    private void toJson() {
+        double sum = 0;
+        double max = 0;
+        for (int e = 0; e < nEdges; e++) {
+            sum += edgeLength[e];
+            max = Math.max(max, edgeLength[e]);
+        }
+        jobj.addProperty("nTips", nTips);
+        jobj.addProperty("nBranches", nBranches);
+        jobj.addProperty("nCrossings", nCrossings);
+        jobj.addProperty("nEdges", nEdges);
+        jobj.addProperty("meanEdgeLength", nEdges > 0 ? sum / nEdges : 0);
+        jobj.addProperty("maxEdgeLength", max);
+    }
+}
@@ -0,0 +1,67 @@
+package com.mycompany.imagej;
+
+import com.google.gson.JsonElement;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A stage of RootAnalysis, computing one entry of the features of an image
+ * Stages are registered in Stages and selected by name. Each one declares the shared
+ * artifacts of the Context it reads, so that only the artifacts of the selected stages are built.
+ */
+public interface Stage {
+
+    /** Shared artifacts of an image, built by the Context on first use */
+    enum Artifact {
+        MASK, SKELETON(MASK), EDM(MASK), BOUNDS(MASK), INTEGRAL(MASK), GEOM(MASK, SKELETON, BOUNDS, INTEGRAL),
+        TOPOLOGY(SKELETON), RADII(SKELETON, EDM);
+
+        // Artifacts read to build this one, always declared before it
+        public final Artifact[] requires;
+
+        Artifact(Artifact... requires) {
+            this.requires = requires;
+        }
+    }
+
+    /**
+     * @return name of the stage, also the key of its entry in the features
+     */
+    String name();
+
+    /**
+     * @return the artifacts read by the stage
+     */
+    Set<Artifact> requires();
+
+    /**
+     * @return the keys of the entry of the stage, empty if the entry is a single value
+     */
+    List<String> outputs();
+
+    /**
+     * @return the keys of the outputs that are tables, whose length may change from an image to the next,
+     * instead of a single value; they are left out of the columns of a CSV output, see CsvSink
+     */
+    default List<String> tables() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @param output key of the entry, empty if the entry is a single value, or path of a value within
+     * an output, such as histogram.radius, the indices of the tables left out
+     * @return the power of the pixel size the output is measured in: 1 for a length or a position,
+     * 2 for an area, 3 for a volume, 0 if it does not depend on the scale (a count, a ratio or an angle)
+     */
+    default int dimension(String output) {
+        return 0;
+    }
+
+    /**
+     * @param ctx analysis context of the image
+     * @return the entry of the stage in the features
+     */
+    JsonElement run(Context ctx);
+}
@@ -0,0 +1,238 @@
+package com.mycompany.imagej;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonPrimitive;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import static com.mycompany.imagej.Stage.Artifact.*;
+
+/**
+ * Registry of the stages of RootAnalysis, in the order they are run and written
+ */
+public class Stages {
+
+    private static final Map<String, Stage> registry = new LinkedHashMap<>();
+    // Stages only run when asked for by name, not by default
+    private static final Set<String> optional = new HashSet<>();
+
+    static {
+        List<String> diameter = Arrays.asList("max", "mean", "mode", "winit", "hinit", "maxLateral", "maxLateralX",
+                "maxLaterlaY", "maxRadial", "maxRadialX", "maxRadialY");
+        register(of("diameter", EnumSet.of(EDM, SKELETON, RADII), diameter,
+                dimensions(1, diameter),
+                ctx -> new Diameter(ctx).jobj));
+        // Radii and volumes of the histogram; its counts are numbers of skeleton pixels, not scaled
+        Map<String, Integer> tissue = dimensions(1, Arrays.asList("max", "min", "histogram.radius"));
+        tissue.putAll(dimensions(3, Arrays.asList("histogram.volume", "histogram.cumVolume")));
+        register(of("tissue", EnumSet.of(RADII),
+                Arrays.asList("histogram", "max", "min"),
+                Collections.singletonList("histogram"), tissue,
+                ctx -> new Tissue(ctx).jobj));
+        register(of("volume", EnumSet.of(MASK),
+                Collections.emptyList(),
+                dimensions(3, Collections.singletonList("")),
+                ctx -> new JsonPrimitive(Rotate.getVolume(ctx.mask()))));
+        Map<String, Integer> geometry = dimensions(1, Arrays.asList("length", "width", "height"));
+        geometry.put("area", 2);
+        // The centre of mass is relative to the bounding box, not scaled
+        register(of("geometry", EnumSet.of(GEOM),
+                Arrays.asList("length", "area", "width", "height", "widthHeightRatio", "comX", "comY"),
+                geometry,
+                ctx -> ctx.geometry().jobj));
+        // The densities are fractions of the regions, not scaled
+        register(of("densityEllipses", EnumSet.of(INTEGRAL, GEOM),
+                Collections.singletonList("area"),
+                Collections.singletonList("area"), Collections.emptyMap(),
+                ctx -> new DensityEllipses(ctx).jobj));
+        register(of("densityRectangles", EnumSet.of(INTEGRAL, GEOM),
+                Collections.singletonList("densityRectangles"),
+                Collections.singletonList("densityRectangles"), Collections.emptyMap(),
+                ctx -> new DensityRectangles(ctx).jobj));
+        register(of("densityGrid", EnumSet.of(INTEGRAL, GEOM),
+                Arrays.asList("grid", "rings"),
+                Arrays.asList("grid", "rings"), Collections.emptyMap(),
+                ctx -> new DensityGrid(ctx).jobj));
+        register(of("directionality", EnumSet.of(MASK, GEOM),
+                Collections.singletonList("anglePropotion"),
+                ctx -> new DirectionalityAnalysis(ctx).jobj));
+        register(of("pixelCount", EnumSet.of(SKELETON),
+                Collections.singletonList("nTips"),
+                ctx -> new PixelCount(ctx).jobj));
+        // Counts of the nodes and edges of the skeleton: only on demand
+        register(of("skeletonTopology", EnumSet.of(TOPOLOGY),
+                Arrays.asList("nTips", "nBranches", "nCrossings", "nEdges", "meanEdgeLength", "maxEdgeLength"),
+                dimensions(1, Arrays.asList("meanEdgeLength", "maxEdgeLength")),
+                ctx -> ctx.topology().jobj), false);
+        // Tables per segment: only on demand
+        register(of("skeletonGraph", EnumSet.of(TOPOLOGY, EDM),
+                Arrays.asList("totalLength", "maxOrder", "length", "meanRadius", "maxRadius", "order"),
+                Arrays.asList("length", "meanRadius", "maxRadius", "order"),
+                dimensions(1, Arrays.asList("totalLength", "length", "meanRadius", "maxRadius")),
+                ctx -> new SkeletonGraph(ctx).jobj), false);
+        // Foreground length of the rows and columns, one slice of the table per band of rows of pixels
+        register(of("pixelProfile", EnumSet.of(SKELETON, GEOM),
+                Arrays.asList("horizontal", "vertical"),
+                Arrays.asList("horizontal", "vertical"),
+                dimensions(1, Arrays.asList("horizontal.average", "horizontal.max", "vertical.average", "vertical.max")),
+                ctx -> new PixelProfile(ctx).jobj));
+        register(of("convexHull", EnumSet.of(MASK),
+                Collections.singletonList("area"),
+                dimensions(2, Collections.singletonList("area")),
+                ctx -> new ConvexHull(ctx).jobj));
+        // Points of the outline in the bounding box; the widths are relative to it, not scaled
+        register(of("coordinates", EnumSet.of(MASK, BOUNDS),
+                Arrays.asList("xCoord", "yCoord", "diff", "cum"),
+                Arrays.asList("xCoord", "yCoord", "diff", "cum"),
+                dimensions(1, Arrays.asList("xCoord", "yCoord")),
+                ctx -> new Coordinates(ctx).jobj));
+        // Foreground length and extent of each row: one entry per row of pixels
+        register(of("depthProfile", EnumSet.of(MASK),
+                Arrays.asList("line", "extent"),
+                Arrays.asList("line", "extent"),
+                dimensions(1, Arrays.asList("line", "extent")),
+                ctx -> new DepthProfile(ctx).jobj));
+    }
+
+    /**
+     * Add a stage, run after the ones already registered
+     * @param stage the stage, replacing any stage of the same name
+     */
+    public static synchronized void register(Stage stage) {
+        register(stage, true);
+    }
+
+    /**
+     * Add a stage, run after the ones already registered
+     * @param stage the stage, replacing any stage of the same name
+     * @param byDefault true to run the stage when no stage is asked for by name, false to only run it on demand
+     */
+    public static synchronized void register(Stage stage, boolean byDefault) {
+        registry.put(stage.name(), stage);
+        if (byDefault) optional.remove(stage.name());
+        else optional.add(stage.name());
+    }
+
+    /**
+     * @return names of the registered stages, in order
+     */
+    public static synchronized List<String> names() {
+        return new ArrayList<>(registry.keySet());
+    }
+
+    /**
+     * @param names names of the stages, the ones run by default if null or empty
+     * @return the stages, in the registry order
+     * @throws IllegalArgumentException if a name is not registered
+     */
+    public static synchronized List<Stage> select(Collection<String> names) {
+        if (names == null || names.isEmpty()) {
+            List<Stage> stages = new ArrayList<>();
+            for (Stage stage : registry.values()) {
+                if (!optional.contains(stage.name())) stages.add(stage);
+            }
+            return stages;
+        }
+        for (String name : names) {
+            if (!registry.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown analyzer: " + name + ", expected one of " + registry.keySet());
+            }
+        }
+        List<Stage> stages = new ArrayList<>();
+        for (Stage stage : registry.values()) {
+            if (names.contains(stage.name())) stages.add(stage);
+        }
+        return stages;
+    }
+
+    /**
+     * @param name name of the stage
+     * @param requires artifacts read by the stage
+     * @param outputs keys of the entry of the stage
+     * @param run computation of the entry
+     * @return the stage
+     */
+    public static Stage of(String name, Set<Stage.Artifact> requires, List<String> outputs,
+                           Function<Context, JsonElement> run) {
+        return of(name, requires, outputs, Collections.emptyMap(), run);
+    }
+
+    /**
+     * @param name name of the stage
+     * @param requires artifacts read by the stage
+     * @param outputs keys of the entry of the stage
+     * @param dimensions power of the pixel size of the outputs measured in pixels, see Stage.dimension
+     * @param run computation of the entry
+     * @return the stage
+     */
+    public static Stage of(String name, Set<Stage.Artifact> requires, List<String> outputs,
+                           Map<String, Integer> dimensions, Function<Context, JsonElement> run) {
+        return of(name, requires, outputs, Collections.emptyList(), dimensions, run);
+    }
+
+    /**
+     * @param name name of the stage
+     * @param requires artifacts read by the stage
+     * @param outputs keys of the entry of the stage
+     * @param tables keys of the outputs that are tables, see Stage.tables
+     * @param dimensions power of the pixel size of the outputs measured in pixels, see Stage.dimension
+     * @param run computation of the entry
+     * @return the stage
+     */
+    public static Stage of(String name, Set<Stage.Artifact> requires, List<String> outputs, List<String> tables,
+                           Map<String, Integer> dimensions, Function<Context, JsonElement> run) {
+        return new Stage() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public Set<Stage.Artifact> requires() {
+                return requires;
+            }
+
+            @Override
+            public List<String> outputs() {
+                return outputs;
+            }
+
+            @Override
+            public List<String> tables() {
+                return tables;
+            }
+
+            @Override
+            public int dimension(String output) {
+                return dimensions.getOrDefault(output, 0);
+            }
+
+            @Override
+            public JsonElement run(Context ctx) {
+                return run.apply(ctx);
+            }
+        };
+    }
+
+    /**
+     * @param dimension power of the pixel size of the outputs
+     * @param outputs keys of the outputs
+     * @return the dimension of each output
+     */
+    private static Map<String, Integer> dimensions(int dimension, List<String> outputs) {
+        Map<String, Integer> dimensions = new HashMap<>();
+        for (String output : outputs) dimensions.put(output, dimension);
+        return dimensions;
+    }
+}
@@ -3,12 +3,13 @@ package com.mycompany.imagej;
 import ij.IJ;
 import ij.ImagePlus;
 import ij.ImageStack;
+import ij.plugin.filter.ThresholdToSelection;
 import ij.process.ColorProcessor;
+import ij.process.ImageProcessor;
 
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -201,14 +202,38 @@ public final class Util {
 	}
 	
 	
+	/**
+	 * Create a selection from the thresholded pixels or, for a binary image, from the foreground.
+	 * Same as IJ.run(im, "Create Selection", "") without going through the ImageJ menus,
+	 * so that it can run headless and from several threads.
+	 * @param im the image, its ROI is set to the selection
+	 */
+	public static void createSelection(ImagePlus im){
+		ImageProcessor ip = im.getProcessor();
+		if(ip.getMinThreshold() == ImageProcessor.NO_THRESHOLD){
+			int fg = ip.isInvertedLut() ? 255 : 0;
+			ip.setThreshold(fg, fg, ImageProcessor.NO_LUT_UPDATE);
+		}
+		im.setRoi(ThresholdToSelection.run(im));
+	}
+	
+	
+	/**
+	 * Initialize the CSV connection
+	 */
+	public static RowWriter initializeCSV(String folder){	
+		return initializeCSV(folder, false);
+	}
+	
 	/**
 	 * Initialize the CSV connection
+	 * @param append true to add to the rows already in the file
 	 */
-	public static PrintWriter initializeCSV(String folder){	
+	public static RowWriter initializeCSV(String folder, boolean append){	
 		
-		// Create the connection
-		PrintWriter pw;
-		try{ pw = new PrintWriter(new FileWriter(folder)); }
+		// Create the connection, buffered and flushed following the default policy
+		RowWriter pw;
+		try{ pw = new RowWriter(new FileWriter(folder, append), RowWriter.defaultFlush, RowWriter.defaultRows); }
 		catch(IOException e){
 			IJ.log("Could not save file "+folder);
 			return null;
@@ -7,7 +7,9 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.PrintStream;
+import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -75,16 +77,25 @@ class BatchTest {
     @Test
     void main2() {
         restoreStreams();
-        Batch.main("-d","1,2,3,4,", "-i", "inputfile", "-n", "10");
-        System.out.println(Batch.options.anInt);
-        System.out.println(Batch.options.inputFile);
-        System.out.println(Batch.options.aListStrings);
-        System.out.format("Received %s %d...\n", Batch.options.inputFile, Batch.options.anInt);
-        for (String el : Batch.options.aListStrings) {
+        Batch.main("-a", "diameter,tissue", "-i", "inputfile", "-o", "out.csv", "-t", "10");
+        assertEquals("inputfile", Batch.options.input);
+        assertEquals("out.csv", Batch.options.output);
+        assertEquals(10, Batch.options.threads);
+        assertEquals(Arrays.asList("diameter", "tissue"), Batch.options.analyzers);
+        System.out.format("Received %s %d...\n", Batch.options.input, Batch.options.threads);
+        for (String el : Batch.options.analyzers) {
             System.out.format("\\--> <%s>\n", el);
         }
     }
 
+    @Test
+    void inputFiles() {
+        File[] images = Batch.inputFiles("src/test/resources/Images/*.png");
+        assertEquals(1, images.length);
+        assertEquals("root_1_lg.png", images[0].getName());
+        assertEquals(1, Batch.inputFiles("src/test/resources/Images").length);
+    }
+
     @AfterAll
     public static void restoreStreams() {
         System.setOut(originalOut);
@@ -0,0 +1,99 @@
+package com.mycompany.imagej;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvSinkTest {
+
+    // A single value and a table
+    private static final List<Stage> stages = Arrays.asList(
+            Stages.of("diameter", EnumSet.noneOf(Stage.Artifact.class), Arrays.asList("max", "mean"), ctx -> null),
+            Stages.of("de", EnumSet.noneOf(Stage.Artifact.class), Collections.emptyList(), ctx -> null),
+            Stages.of("tissue", EnumSet.noneOf(Stage.Artifact.class), Arrays.asList("histogram", "max"),
+                    Collections.singletonList("histogram"), Collections.emptyMap(), ctx -> null));
+
+    private JsonObject record(String title, double max, int n) {
+        JsonObject jobj = new JsonObject();
+        jobj.addProperty("image", title);
+        JsonObject dia = new JsonObject();
+        dia.addProperty("max", max);
+        jobj.add("diameter", dia);
+        JsonArray ja = new JsonArray();
+        for (int i = 0; i < n; i++) ja.add(i);
+        jobj.add("de", ja);
+        return jobj;
+    }
+
+    @Test
+    void flatten() {
+        Map<String, String> row = new LinkedHashMap<>();
+        CsvSink.flatten("", record("a,b", 4.0, 2), row);
+        assertArrayEquals(new String[]{"image", "diameter.max", "de.0", "de.1"}, row.keySet().toArray());
+        assertEquals("\"a,b\"", row.get("image"));
+        assertEquals("4.0", row.get("diameter.max"));
+    }
+
+    @Test
+    void columns() {
+        assertEquals(Arrays.asList("image", "diameter.max", "diameter.mean", "de", "tissue.max"), CsvSink.columns(stages));
+    }
+
+    @Test
+    void write() {
+        StringWriter sw = new StringWriter();
+        StringWriter values = new StringWriter();
+        CsvSink sink = new CsvSink(new RowWriter(sw, RowWriter.Flush.CLOSE, 1),
+                new RowWriter(values, RowWriter.Flush.CLOSE, 1), CsvSink.columns(stages));
+        sink.write(record("a", 1.0, 2));
+        // A table in place of a single value goes with the tables, the row keeps its columns
+        sink.write(record("b", 2.0, 3));
+        sink.close();
+        assertArrayEquals(new String[]{"a,1.0,,,", "b,2.0,,,"}, sw.toString().split("\\R"));
+        assertArrayEquals(new String[]{"a,de.0,0", "a,de.1,1", "b,de.0,0", "b,de.1,1", "b,de.2,2"},
+                values.toString().split("\\R"));
+    }
+
+    @Test
+    void open(@TempDir Path dir) throws IOException {
+        File file = dir.resolve("out.csv").toFile();
+        CsvSink sink = CsvSink.open(file.getPath(), false, stages);
+        JsonObject jobj = record("a\nb", 1.0, 0);
+        JsonObject tissue = new JsonObject();
+        JsonArray histogram = new JsonArray();
+        histogram.add(5);
+        tissue.add("histogram", histogram);
+        tissue.addProperty("max", 1);
+        jobj.add("tissue", tissue);
+        sink.write(jobj);
+        sink.close();
+
+        // Appended to, with the same columns
+        sink = CsvSink.open(file.getPath(), true, stages);
+        sink.write(record("c", 2.0, 1));
+        sink.close();
+        assertEquals(Arrays.asList("image,diameter.max,diameter.mean,de,tissue.max", "\"a", "b\",1.0,,,1", "c,2.0,,,"),
+                Files.readAllLines(file.toPath()));
+        assertEquals(Arrays.asList(CsvSink.VALUES_HEADER, "\"a", "b\",tissue.histogram.0,5", "c,de.0,0"),
+                Files.readAllLines(dir.resolve("out.long.csv")));
+
+        // Other analyzers do not fit the columns
+        assertThrows(IllegalStateException.class, () -> CsvSink.open(file.getPath(), true, stages.subList(0, 1)));
+    }
+}
@@ -0,0 +1,61 @@
+package com.mycompany.imagej;
+
+import com.google.gson.JsonElement;
+import ij.ImagePlus;
+import ij.process.ByteProcessor;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DiameterTest {
+
+    /**
+     * @param y0 first row of the foreground
+     * @param y1 last row of the foreground
+     * @return a 40 x 30 mask with the rows y0 to y1 set between the columns 2 and 37,
+     * foreground 255 with an inverted LUT, and its skeleton, the middle row from column 6 to 33
+     */
+    private Context context(int y0, int y1) {
+        ByteProcessor mask = new ByteProcessor(40, 30);
+        mask.invertLut();
+        for (int y = y0; y <= y1; y++)
+            for (int x = 2; x <= 37; x++) mask.set(x, y, 255);
+        ByteProcessor skel = new ByteProcessor(40, 30);
+        for (int x = 6; x <= 33; x++) skel.set(x, 13, 255);
+        return new Context(new ImagePlus("mask", mask), new ImagePlus("skel", skel));
+    }
+
+    @Test
+    void bar() {
+        // Four pixels from the skeleton to the background above and below
+        Diameter d = new Diameter(context(10, 16));
+        assertEquals(4, d.jobj.get("max").getAsDouble(), 1e-6);
+        assertEquals(4, d.jobj.get("mean").getAsDouble(), 1e-6);
+        assertEquals(4, d.jobj.get("mode").getAsDouble(), 1e-6);
+    }
+
+    @Test
+    void allForeground() {
+        // Without any background, every distance is infinite: nothing is measured along the skeleton
+        ByteProcessor mask = new ByteProcessor(40, 30);
+        mask.invertLut();
+        mask.setValue(255);
+        mask.fill();
+        ByteProcessor skel = new ByteProcessor(40, 30);
+        for (int x = 6; x <= 33; x++) skel.set(x, 13, 255);
+        Diameter d = new Diameter(new Context(new ImagePlus("mask", mask), new ImagePlus("skel", skel)));
+        assertEquals(0, d.jobj.get("max").getAsDouble());
+        assertEquals(0, d.jobj.get("mean").getAsDouble());
+        assertEquals(0, d.jobj.get("mode").getAsDouble());
+        // No deepest point either: the search stays at the first pixel, and the stem is walked from there
+        assertEquals(0, d.wmax);
+        assertEquals(0, d.hmax);
+        assertEquals(19, d.jobj.get("winit").getAsInt());
+        assertEquals(0, d.jobj.get("hinit").getAsInt());
+        for (Map.Entry<String, JsonElement> e : d.jobj.entrySet()) {
+            assertTrue(Double.isFinite(e.getValue().getAsDouble()), e.getKey());
+        }
+    }
+}
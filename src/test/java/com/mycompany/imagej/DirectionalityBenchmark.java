@@ -0,0 +1,80 @@
+package com.mycompany.imagej;
+
+import ij.IJ;
+import ij.ImagePlus;
+import ij.process.ImageProcessor;
+
+import java.util.Arrays;
+
+/**
+ * Time of the local gradient orientation of Directionality, with and without skipping the uniform blocks
+ * Not a test: run it with the test classpath, as
+ * java com.mycompany.imagej.DirectionalityBenchmark [image] [tiles]
+ * The mask of the image is rotated as in DirectionalityAnalysis and repeated tiles x tiles times,
+ * to stand for a larger image. The time with skipping includes building the pyramid of the slice.
+ */
+public class DirectionalityBenchmark {
+
+    private static final int RUNS = 7;
+
+    public static void main(String[] args) {
+        String file = args.length > 0 ? args[0] : "src/test/resources/Images/root_1_lg.png";
+        int tiles = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        ImagePlus mask = new Preprocess(IJ.openImage(file), true, 50, false).im;
+        ImageProcessor slice = tile(mask.getProcessor().rotateLeft(), tiles);
+        System.out.println(slice.getWidth() + " x " + slice.getHeight() + " pixels");
+
+        // Interleaved, so that both get the same warm-up
+        double[] with = new double[RUNS];
+        double[] without = new double[RUNS];
+        int[] hash = new int[2];
+        for (int r = -3; r < RUNS; r++) {
+            double a = time(slice, true, hash, 0);
+            double b = time(slice, false, hash, 1);
+            // The first runs only warm up
+            if (r < 0) continue;
+            with[r] = a;
+            without[r] = b;
+        }
+        Arrays.sort(with);
+        Arrays.sort(without);
+        System.out.printf("skipping the uniform blocks: %.1f ms (median of %d)%n", with[RUNS / 2], RUNS);
+        System.out.printf("full scan:                   %.1f ms (median of %d)%n", without[RUNS / 2], RUNS);
+        System.out.println("same histogram: " + (hash[0] == hash[1]));
+    }
+
+    /**
+     * @param ip an image
+     * @param n number of copies along each axis
+     * @return the image repeated n x n times
+     */
+    private static ImageProcessor tile(ImageProcessor ip, int n) {
+        if (n == 1) return ip;
+        ImageProcessor tiled = ip.createProcessor(ip.getWidth() * n, ip.getHeight() * n);
+        for (int y = 0; y < n; y++) {
+            for (int x = 0; x < n; x++) tiled.insert(ip, x * ip.getWidth(), y * ip.getHeight());
+        }
+        return tiled;
+    }
+
+    /**
+     * @param ip the slice
+     * @param skip true to skip the uniform blocks
+     * @param hash where the hash of the histogram is written
+     * @param k index of the hash
+     * @return the time in ms
+     */
+    private static double time(ImageProcessor ip, boolean skip, int[] hash, int k) {
+        Directionality d = new Directionality();
+        d.setImagePlus(new ImagePlus("slice", ip.duplicate()));
+        d.setMethod(Directionality.AnalysisMethod.LOCAL_GRADIENT_ORIENTATION);
+        d.setBinNumber(10);
+        d.setBinStart(-90);
+        d.setSkipFlatBlocksFlag(skip);
+        long t = System.nanoTime();
+        d.computeHistograms();
+        double ms = (System.nanoTime() - t) / 1e6;
+        hash[k] = Arrays.hashCode(d.getHistograms().get(0));
+        return ms;
+    }
+}
@@ -0,0 +1,44 @@
+package com.mycompany.imagej;
+
+import ij.process.ByteProcessor;
+import ij.process.FloatProcessor;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DistanceTransformTest {
+
+    @Test
+    void exact() {
+        ByteProcessor bp = new ByteProcessor(150, 90);
+        Random r = new Random(2);
+        for (int i = 0; i < 150 * 90; i++) bp.set(i, r.nextInt(40) == 0 ? 0 : 255);
+        FloatProcessor fp = DistanceTransform.edm(bp, 255);
+        for (int y = 0; y < 90; y++) {
+            for (int x = 0; x < 150; x++) {
+                double best = Double.MAX_VALUE;
+                for (int v = 0; v < 90; v++)
+                    for (int u = 0; u < 150; u++)
+                        if (bp.get(u, v) != 255) best = Math.min(best, (u - x) * (u - x) + (v - y) * (v - y));
+                assertEquals(Math.sqrt(best), fp.getf(x, y), 1e-4, "at " + x + "," + y);
+            }
+        }
+    }
+
+    @Test
+    void noBackground() {
+        ByteProcessor bp = new ByteProcessor(5, 5);
+        bp.setValue(255);
+        bp.fill();
+        FloatProcessor fp = DistanceTransform.edm(bp, 255);
+        assertEquals(Float.POSITIVE_INFINITY, fp.getf(2, 2));
+        // Thick roots are not capped at 255
+        ByteProcessor big = new ByteProcessor(700, 1);
+        big.setValue(255);
+        big.fill();
+        big.set(0, 0);
+        assertEquals(699, DistanceTransform.edm(big, 255).getf(699, 0), 1e-6);
+    }
+}
@@ -0,0 +1,78 @@
+package com.mycompany.imagej;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EllipticFDTest {
+
+    /**
+     * @return a closed, noisy contour around (50, 40)
+     */
+    private double[][] contour(int m, long seed) {
+        Random r = new Random(seed);
+        double[][] xy = new double[2][m];
+        for (int i = 0; i < m; i++) {
+            double a = 2 * Math.PI * i / m;
+            xy[0][i] = 50 + 30 * Math.cos(a) + r.nextInt(3);
+            xy[1][i] = 40 + 20 * Math.sin(a) + r.nextInt(3);
+        }
+        return xy;
+    }
+
+    @Test
+    void sameAsDirectSums() {
+        double[][] xy = contour(137, 1);
+        int m = 137, n = 20;
+        EllipticFD fd = new EllipticFD(xy[0], xy[1], n);
+        double t = 2.0 * Math.PI / m;
+        for (int k = 0; k < n; k++) {
+            double ax = 0, bx = 0, ay = 0, by = 0;
+            for (int i = 0; i < m; i++) {
+                ax += xy[0][i] * Math.cos(k * t * i);
+                bx += xy[0][i] * Math.sin(k * t * i);
+                ay += xy[1][i] * Math.cos(k * t * i);
+                by += xy[1][i] * Math.sin(k * t * i);
+            }
+            assertEquals(ax * 2.0 / m, fd.ax[k], 1e-9);
+            assertEquals(bx * 2.0 / m, fd.bx[k], 1e-9);
+            assertEquals(ay * 2.0 / m, fd.ay[k], 1e-9);
+            assertEquals(by * 2.0 / m, fd.by[k], 1e-9);
+        }
+        // The second descriptor is the normalization
+        assertEquals(2, fd.efd[1], 1e-12);
+
+        // The polygon is rebuilt from the descriptors
+        double[][] polygon = fd.createPolygon();
+        int[][] polygonInt = fd.createPolygonInt();
+        for (int i = 0; i < m; i++) {
+            double px = fd.ax[0] / 2.0, py = fd.ay[0] / 2.0;
+            for (int k = 1; k < n; k++) {
+                px += fd.ax[k] * Math.cos(t * k * i) + fd.bx[k] * Math.sin(t * k * i);
+                py += fd.ay[k] * Math.cos(t * k * i) + fd.by[k] * Math.sin(t * k * i);
+            }
+            assertEquals(px, polygon[i][0], 1e-9);
+            assertEquals(py, polygon[i][1], 1e-9);
+            assertEquals((int) polygon[i][0], polygonInt[i][0]);
+        }
+    }
+
+    @Test
+    void batch() {
+        double[][] xs = new double[5][], ys = new double[5][];
+        for (int c = 0; c < 5; c++) {
+            double[][] xy = contour(c < 3 ? 64 : 90, c);
+            xs[c] = xy[0];
+            ys[c] = xy[1];
+        }
+        EllipticFD[] fds = EllipticFD.compute(xs, ys, 10);
+        for (int c = 0; c < 5; c++) {
+            EllipticFD fd = new EllipticFD(xs[c], ys[c], 10);
+            assertArrayEquals(fd.ax, fds[c].ax);
+            assertArrayEquals(fd.by, fds[c].by);
+            assertArrayEquals(fd.efd, fds[c].efd);
+        }
+    }
+}
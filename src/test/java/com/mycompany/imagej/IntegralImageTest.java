@@ -0,0 +1,74 @@
+package com.mycompany.imagej;
+
+import ij.gui.OvalRoi;
+import ij.gui.Roi;
+import ij.process.ByteProcessor;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntegralImageTest {
+
+    /**
+     * @return a random binary mask, foreground 255 with an inverted LUT
+     */
+    private ByteProcessor mask() {
+        ByteProcessor bp = new ByteProcessor(60, 40);
+        bp.invertLut();
+        Random r = new Random(1);
+        for (int i = 0; i < 60 * 40; i++) bp.set(i, r.nextInt(3) == 0 ? 255 : 0);
+        return bp;
+    }
+
+    private int brute(ByteProcessor bp, Roi roi) {
+        int n = 0;
+        for (int y = 0; y < bp.getHeight(); y++)
+            for (int x = 0; x < bp.getWidth(); x++)
+                if (bp.get(x, y) == 255 && roi.contains(x, y)) n++;
+        return n;
+    }
+
+    @Test
+    void rectangles() {
+        ByteProcessor bp = mask();
+        IntegralImage ii = new IntegralImage(bp);
+        assertEquals(brute(bp, new Roi(0, 0, 60, 40)), ii.total());
+        assertEquals(brute(bp, new Roi(5, 7, 20, 11)), ii.count(5, 7, 20, 11));
+        // Clipped to the mask
+        assertEquals(brute(bp, new Roi(-5, 30, 20, 20)), ii.count(-5, 30, 20, 20));
+        assertEquals(0, ii.count(70, 0, 10, 10));
+    }
+
+    @Test
+    void ellipses() {
+        ByteProcessor bp = mask();
+        IntegralImage ii = new IntegralImage(bp);
+        Roi roi = new OvalRoi(10.5, 3, 30, 25);
+        int[] n = ii.count(roi);
+        assertEquals(brute(bp, roi), n[0]);
+        bp.setRoi(roi);
+        assertEquals(bp.getStatistics().pixelCount, n[1]);
+    }
+
+    @Test
+    void ellipseRows() {
+        ByteProcessor bp = mask();
+        IntegralImage ii = new IntegralImage(bp);
+        double cx = 30.3, cy = 18.7, rx = 17.2, ry = 11.6;
+        int fg = 0, size = 0;
+        for (int y = 0; y < bp.getHeight(); y++) {
+            for (int x = 0; x < bp.getWidth(); x++) {
+                double dx = (x + 0.5 - cx) / rx, dy = (y + 0.5 - cy) / ry;
+                if (dx * dx + dy * dy < 1) {
+                    size++;
+                    if (bp.get(x, y) == 255) fg++;
+                }
+            }
+        }
+        assertArrayEquals(new int[]{fg, size}, ii.count(cx, cy, rx, ry));
+        // Clipped to the mask
+        assertEquals(ii.total(), ii.count(30.0, 20.0, 1000.0, 1000.0)[0]);
+    }
+}
@@ -0,0 +1,62 @@
+package com.mycompany.imagej;
+
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalTest {
+
+    /**
+     * Write the images not in the journal yet, as Results.analyze does
+     * @param out the output
+     * @param images the images
+     * @param n number of images written before the run stops
+     * @param close false to stop as a crash does, without closing the output
+     */
+    private void run(String out, List<File> images, int n, boolean close) {
+        ResultSink sink = ResultSink.open(out, true, Stages.select(null));
+        Journal journal = new Journal(out + ".journal", true);
+        sink.writer().next = journal.writer();
+        int written = 0;
+        for (File image : images) {
+            if (journal.isDone(image)) continue;
+            if (written++ == n) break;
+            JsonObject jobj = new JsonObject();
+            jobj.addProperty("image", image.getName());
+            sink.write(jobj, () -> journal.record(image));
+        }
+        if (close) {
+            sink.close();
+            journal.close();
+        }
+    }
+
+    @Test
+    void resumeAfterCrash(@TempDir Path dir) throws IOException {
+        List<File> images = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            File image = dir.resolve("image" + i + ".tif").toFile();
+            Files.write(image.toPath(), new byte[]{(byte) i});
+            images.add(image);
+        }
+        String out = dir.resolve("out.jsonl").toString();
+
+        // Each image is flushed with its journal entry, a crash after 3 images keeps both
+        run(out, images, 3, false);
+        run(out, images, images.size(), true);
+
+        List<String> lines = Files.readAllLines(new File(out).toPath());
+        assertEquals(images.size(), lines.size());
+        assertEquals(images.size(), new HashSet<>(lines).size());
+    }
+}
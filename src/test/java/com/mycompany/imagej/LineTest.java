@@ -0,0 +1,38 @@
+package com.mycompany.imagej;
+
+import ij.process.ByteProcessor;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineTest {
+
+    private ByteProcessor row(int... values) {
+        ByteProcessor bp = new ByteProcessor(values.length, 1);
+        for (int i = 0; i < values.length; i++) bp.set(i, values[i]);
+        return bp;
+    }
+
+    @Test
+    void extent() {
+        // From the first foreground pixel to the last background pixel after it
+        assertEquals(6, Line.extent(row(0, 255, 255, 0, 255, 0, 0), 0));
+        // No foreground
+        assertEquals(1, Line.extent(row(0, 0, 0), 0));
+        // No background after the first foreground pixel
+        assertEquals(-1, Line.extent(row(0, 255, 125), 0));
+    }
+
+    @Test
+    void neighbours() {
+        ByteProcessor bp = new ByteProcessor(3, 3);
+        bp.set(0, 0, 255);
+        bp.set(2, 1, 255);
+        int code = Line.neighbourCode((byte[]) bp.getPixels(), 3, 3, 1, 1);
+        assertEquals((1 << 7) | (1 << 2), code);
+        assertEquals(2, Line.NEIGHBOURS[code]);
+        // At the corner, outside of the image is background
+        assertEquals(0, Line.nNeighbours(bp, 0, 0));
+        assertEquals(1, Line.count(bp, 0));
+    }
+}
@@ -0,0 +1,56 @@
+package com.mycompany.imagej;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PyramidTest {
+
+    @Test
+    void minMax() {
+        // Odd sizes, so that the blocks of the right and bottom edges are smaller
+        int w = 21, h = 13;
+        float[] pixels = new float[w * h];
+        Random r = new Random(3);
+        for (int i = 0; i < pixels.length; i++) pixels[i] = r.nextInt(100);
+        Pyramid p = new Pyramid(pixels, w, h, 3);
+        assertEquals(3, p.width[3]);
+        assertEquals(2, p.height[3]);
+        for (int l = 1; l <= 3; l++) {
+            int size = 1 << l;
+            for (int by = 0; by < p.height[l]; by++) {
+                for (int bx = 0; bx < p.width[l]; bx++) {
+                    float min = Float.MAX_VALUE, max = -Float.MAX_VALUE;
+                    for (int y = by * size; y < Math.min(h, (by + 1) * size); y++) {
+                        for (int x = bx * size; x < Math.min(w, (bx + 1) * size); x++) {
+                            min = Math.min(min, pixels[y * w + x]);
+                            max = Math.max(max, pixels[y * w + x]);
+                        }
+                    }
+                    assertEquals(min, p.min(l, bx, by));
+                    assertEquals(max, p.max(l, bx, by));
+                }
+            }
+        }
+    }
+
+    @Test
+    void flat() {
+        // A single pixel set in the middle of a 32 x 32 image of 4 x 4 blocks of 8 pixels
+        float[] pixels = new float[32 * 32];
+        pixels[12 * 32 + 12] = 1;
+        Pyramid p = new Pyramid(pixels, 32, 32, 3);
+        assertTrue(p.contains(3, 1, 1, 1));
+        assertFalse(p.contains(3, 2, 2, 1));
+        assertFalse(p.uniform(3, 1, 1));
+        boolean[] flat = p.flat(3);
+        // Only the blocks touching block (1, 1) are not flat
+        for (int by = 0; by < 4; by++) {
+            for (int bx = 0; bx < 4; bx++) {
+                assertEquals(bx > 2 || by > 2, flat[by * 4 + bx], bx + "," + by);
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.mycompany.imagej;
+
+import ij.process.ByteProcessor;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RadiusHistogramTest {
+
+    @Test
+    void compute() {
+        ByteProcessor edm = new ByteProcessor(4, 1);
+        ByteProcessor skel = new ByteProcessor(4, 1);
+        edm.set(0, 3);
+        edm.set(1, 5);
+        edm.set(2, 5);
+        edm.set(3, 7);
+        skel.setValue(255);
+        skel.fill();
+        // The whole image is skeleton: no radius of 0, which used to throw
+        RadiusHistogram h = new RadiusHistogram();
+        h.compute(edm, skel);
+        assertEquals(3, h.min);
+        assertEquals(7, h.max);
+        assertEquals(2, h.count[5]);
+        assertEquals(25 * Math.PI * 2, h.volume[5], 1e-9);
+        assertEquals((9 + 50 + 49) * Math.PI, h.cumVolume[7], 1e-9);
+        assertEquals(5, h.toJson().size());
+
+        // Off the skeleton, the radius is 0
+        skel.set(3, 0);
+        h.compute(edm, skel);
+        assertEquals(0, h.min);
+        assertEquals(5, h.max);
+        assertEquals(1, h.count[0]);
+    }
+}
@@ -0,0 +1,64 @@
+package com.mycompany.imagej;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RootAnalysisTest {
+
+    @Test
+    void calibrate() {
+        Stage geometry = Stages.select(Collections.singletonList("geometry")).get(0);
+        JsonObject jo = new JsonObject();
+        jo.addProperty("length", 10);
+        jo.addProperty("area", 10);
+        jo.addProperty("widthHeightRatio", 10);
+        RootAnalysis.calibrate(geometry, "", jo, 0.5);
+        assertEquals(5, jo.get("length").getAsDouble(), 1e-12);
+        assertEquals(2.5, jo.get("area").getAsDouble(), 1e-12);
+        assertEquals(10, jo.get("widthHeightRatio").getAsDouble(), 1e-12);
+
+        // A single value, and arrays of values
+        Stage volume = Stages.select(Collections.singletonList("volume")).get(0);
+        assertEquals(1.25, RootAnalysis.calibrate(volume, "", new JsonPrimitive(10), 0.5).getAsDouble(), 1e-12);
+        Stage lengths = Stages.of("lengths", EnumSet.noneOf(Stage.Artifact.class), Arrays.asList("l", "n"),
+                Collections.singletonMap("l", 1), ctx -> null);
+        JsonObject arrays = new JsonObject();
+        JsonArray l = new JsonArray();
+        l.add(2);
+        l.add(4);
+        arrays.add("l", l);
+        arrays.addProperty("n", 3);
+        RootAnalysis.calibrate(lengths, "", arrays, 2);
+        assertEquals(8, arrays.getAsJsonArray("l").get(1).getAsDouble(), 1e-12);
+        assertEquals(3, arrays.get("n").getAsInt());
+
+        // Values within the rows of a table, by their path
+        Stage tissue = Stages.select(Collections.singletonList("tissue")).get(0);
+        RadiusHistogram h = new RadiusHistogram();
+        h.count = new int[]{0, 0, 4};
+        h.volume = new double[]{0, 0, 16 * Math.PI};
+        h.cumVolume = h.volume.clone();
+        h.min = 2;
+        h.max = 2;
+        JsonObject t = new JsonObject();
+        t.add("histogram", h.toJson());
+        t.addProperty("max", 2);
+        RootAnalysis.calibrate(tissue, "", t, 0.5);
+        JsonObject row = t.getAsJsonArray("histogram").get(0).getAsJsonObject();
+        assertEquals(1, row.get("radius").getAsDouble(), 1e-12);
+        assertEquals(4, row.get("count").getAsInt());
+        assertEquals(2 * Math.PI, row.get("volume").getAsDouble(), 1e-12);
+        assertEquals(1, t.get("max").getAsDouble(), 1e-12);
+
+        // Left as is without a scale
+        assertSame(jo, RootAnalysis.calibrate(geometry, "", jo, 1));
+    }
+}
@@ -0,0 +1,104 @@
+package com.mycompany.imagej;
+
+import ij.ImagePlus;
+import ij.gui.PolygonRoi;
+import ij.gui.Roi;
+import ij.process.ByteProcessor;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RotateTest {
+
+    /**
+     * @param slope slope of the bar, in pixels per column
+     * @return a binary image with a flat bar, foreground 255 with an inverted LUT
+     */
+    private ImagePlus bar(double slope) {
+        ByteProcessor bp = new ByteProcessor(200, 200);
+        bp.invertLut();
+        for (int x = 20; x < 180; x++) {
+            int y0 = (int) Math.round(100 + (x - 100) * slope);
+            for (int y = y0 - 3; y <= y0 + 3; y++) bp.set(x, y, 255);
+        }
+        return new ImagePlus("bar", bp);
+    }
+
+    @Test
+    void convexHull() {
+        int[][] pts = {{0, 2, 1, 2, 0, 1}, {0, 0, 1, 2, 2, 0}};
+        int[][] hull = Rotate.convexHull(pts);
+        assertArrayEquals(new int[]{0, 2, 2, 0}, hull[0]);
+        assertArrayEquals(new int[]{0, 0, 2, 2}, hull[1]);
+    }
+
+    @Test
+    void getAngle() {
+        // A horizontal bar is already as short as it gets
+        assertEquals(0, Rotate.getAngle(bar(0)), 1e-9);
+        // A tilted bar is shortest once it is horizontal
+        assertEquals(-Math.toDegrees(Math.atan(0.1)), Rotate.getAngle(bar(0.1)), 0.5);
+        // Outside of the range, the closest bound is kept
+        assertEquals(-2, Rotate.getAngle(bar(0.1), -2, 2), 1e-9);
+    }
+
+    @Test
+    void rowExtremes() {
+        // Both ends of each row of the bar, once
+        int[][] pts = Rotate.rowExtremes(bar(0).getProcessor());
+        assertEquals(14, pts[0].length);
+        assertEquals(20, pts[0][0]);
+        assertEquals(179, pts[0][1]);
+        assertEquals(97, pts[1][0]);
+        assertEquals(103, pts[1][13]);
+    }
+
+    /**
+     * The search of the former Rotate.getAngle: steps of 1 degree from -15 until the height grows,
+     * then steps of 0.1 degree from there, the height being the extent of the hull once rotated
+     * @return the angle found
+     */
+    private static double steppedAngle(int[][] hull) {
+        double angle = steppedAngle(hull, -15, 1, 15);
+        return steppedAngle(hull, angle, 0.1, angle + 1);
+    }
+
+    private static double steppedAngle(int[][] hull, double begin, double step, double end) {
+        double hmin = 1e10;
+        double angle = begin;
+        while (true) {
+            double h = Rotate.projectedExtent(hull, angle);
+            if (h > hmin) break;
+            hmin = h;
+            angle += step;
+            if (angle > end) break;
+        }
+        return angle - step;
+    }
+
+    @Test
+    void twoLocalMinima() {
+        // A quadrilateral whose height has a local minimum near -15 degrees and a lower one near 8.5 degrees
+        ByteProcessor bp = new ByteProcessor(220, 220);
+        bp.invertLut();
+        bp.setValue(255);
+        bp.fill(new PolygonRoi(new int[]{55, 15, 45, 179}, new int[]{107, 186, 194, 174}, 4, Roi.POLYGON));
+        ImagePlus im = new ImagePlus("quad", bp);
+        int[][] hull = Rotate.convexHull(Rotate.rowExtremes(bp));
+
+        // The global minimum, by brute force every 0.01 degree
+        double best = 0;
+        for (int i = 0; i <= 3000; i++) {
+            double a = -15 + i * 0.01;
+            if (Rotate.projectedExtent(hull, a) < Rotate.projectedExtent(hull, best)) best = a;
+        }
+
+        // The former search stopped at the first local minimum, the hull search finds the global one
+        double stepped = steppedAngle(hull);
+        double angle = Rotate.getAngle(im);
+        assertTrue(stepped < -14, "stepped " + stepped);
+        assertEquals(best, angle, 0.01);
+        assertTrue(angle > 8 && angle < 9, "angle " + angle);
+        assertTrue(Rotate.projectedExtent(hull, angle) < Rotate.projectedExtent(hull, stepped) - 1);
+    }
+}
@@ -0,0 +1,55 @@
+package com.mycompany.imagej;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RowWriterTest {
+
+    @Test
+    void flushRows() {
+        StringWriter sw = new StringWriter();
+        RowWriter pw = new RowWriter(sw, RowWriter.Flush.ROWS, 2);
+        pw.println("a");
+        assertEquals("", sw.toString());
+        pw.println("b");
+        assertEquals("a" + System.lineSeparator() + "b" + System.lineSeparator(), sw.toString());
+        pw.close();
+    }
+
+    @Test
+    void flushImage() {
+        StringWriter sw = new StringWriter();
+        RowWriter pw = new RowWriter(sw, RowWriter.Flush.IMAGE, 1);
+        pw.println("a");
+        pw.println("b");
+        assertEquals("", sw.toString());
+        pw.endImage();
+        assertEquals("a" + System.lineSeparator() + "b" + System.lineSeparator(), sw.toString());
+        pw.close();
+    }
+
+    @Test
+    void flushClose() {
+        StringWriter sw = new StringWriter();
+        RowWriter pw = new RowWriter(sw, RowWriter.Flush.CLOSE, 1);
+        pw.println("a");
+        pw.endImage();
+        assertEquals("", sw.toString());
+        pw.close();
+        assertEquals("a" + System.lineSeparator(), sw.toString());
+    }
+
+    @Test
+    void setDefault() {
+        RowWriter.setDefault("rows:50");
+        assertEquals(RowWriter.Flush.ROWS, RowWriter.defaultFlush);
+        assertEquals(50, RowWriter.defaultRows);
+        assertThrows(IllegalArgumentException.class, () -> RowWriter.setDefault("rows:0"));
+        assertThrows(IllegalArgumentException.class, () -> RowWriter.setDefault("sometimes"));
+        RowWriter.setDefault("image");
+        assertEquals(RowWriter.Flush.IMAGE, RowWriter.defaultFlush);
+    }
+}
@@ -0,0 +1,44 @@
+package com.mycompany.imagej;
+
+import ij.process.ByteProcessor;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SkeletonGraphTest {
+
+    @Test
+    void tJunction() {
+        ByteProcessor bp = new ByteProcessor(30, 30);
+        for (int x = 5; x < 25; x++) bp.set(x, 10, 255);
+        for (int y = 11; y < 25; y++) bp.set(15, y, 255);
+        ByteProcessor edm = new ByteProcessor(30, 30);
+        edm.setValue(3);
+        edm.fill();
+        edm.set(20, 10, 5);
+
+        SkeletonGraph g = new SkeletonGraph(new SkeletonTopology(bp), edm);
+        assertEquals(3, g.nSegments);
+        double total = 0;
+        for (int e = 0; e < g.nSegments; e++) total += g.length[e];
+        assertEquals(10 + 9 + 14, total, 1e-9);
+        assertEquals(33, g.jobj.get("totalLength").getAsDouble(), 1e-9);
+        // Two tips meet at the junction, below the segment from the top node
+        assertEquals(2, g.jobj.get("maxOrder").getAsInt());
+        int maxRadius = 0;
+        for (int e = 0; e < g.nSegments; e++) {
+            assertTrue(g.meanRadius[e] >= 3);
+            maxRadius = Math.max(maxRadius, (int) g.maxRadius[e]);
+        }
+        assertEquals(5, maxRadius);
+    }
+
+    @Test
+    void diagonal() {
+        ByteProcessor bp = new ByteProcessor(20, 20);
+        for (int i = 2; i < 12; i++) bp.set(i, i, 255);
+        SkeletonGraph g = new SkeletonGraph(new SkeletonTopology(bp), new ByteProcessor(20, 20));
+        assertEquals(1, g.nSegments);
+        assertEquals(9 * Math.sqrt(2), g.length[0], 1e-9);
+    }
+}
@@ -0,0 +1,58 @@
+package com.mycompany.imagej;
+
+import ij.process.ByteProcessor;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SkeletonTopologyTest {
+
+    @Test
+    void crossingNumbers() {
+        // N and S: a path
+        assertEquals(2, SkeletonTopology.CROSSINGS[1 | 1 << 4]);
+        assertEquals(SkeletonTopology.PATH, SkeletonTopology.CLASS[1 | 1 << 4]);
+        // W, E and S: a branch point
+        assertEquals(SkeletonTopology.BRANCH, SkeletonTopology.CLASS[1 << 2 | 1 << 4 | 1 << 6]);
+        // All four sides: a crossing
+        assertEquals(SkeletonTopology.CROSSING, SkeletonTopology.CLASS[1 | 1 << 2 | 1 << 4 | 1 << 6]);
+        assertEquals(SkeletonTopology.ENDPOINT, SkeletonTopology.CLASS[1 << 3]);
+    }
+
+    @Test
+    void tJunction() {
+        ByteProcessor bp = new ByteProcessor(30, 30);
+        for (int x = 5; x < 25; x++) bp.set(x, 10, 255);
+        for (int y = 11; y < 25; y++) bp.set(15, y, 255);
+        SkeletonTopology st = new SkeletonTopology(bp);
+        assertEquals(3, st.nTips);
+        assertEquals(1, st.nBranches);
+        assertEquals(0, st.nCrossings);
+        assertEquals(4, st.nNodes);
+        assertEquals(3, st.nEdges);
+        int pixels = 0;
+        for (int e = 0; e < st.nEdges; e++) pixels += st.edgePixels[e];
+        // All the pixels but the nodes
+        assertEquals(20 + 14 - 4, pixels);
+        // Each path pixel kept once, with its edge
+        assertEquals(pixels, st.edgePathStart[st.nEdges]);
+        assertEquals(pixels, Arrays.stream(st.edgePath).distinct().count());
+        assertEquals(3, st.jobj.get("nEdges").getAsInt());
+        assertFalse(st.jobj.has("nodeX"));
+    }
+
+    @Test
+    void cross() {
+        ByteProcessor bp = new ByteProcessor(30, 30);
+        for (int i = 5; i < 25; i++) {
+            bp.set(i, 15, 255);
+            bp.set(15, i, 255);
+        }
+        SkeletonTopology st = new SkeletonTopology(bp);
+        assertEquals(4, st.nTips);
+        assertEquals(1, st.nCrossings);
+        assertEquals(4, st.nEdges);
+    }
+}
@@ -0,0 +1,28 @@
+package com.mycompany.imagej;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StagesTest {
+
+    private static List<String> names(List<Stage> stages) {
+        return stages.stream().map(Stage::name).collect(Collectors.toList());
+    }
+
+    @Test
+    void optionalStages() {
+        // Registered, but only run on demand
+        assertTrue(Stages.names().contains("skeletonTopology"));
+        List<String> defaults = names(Stages.select(null));
+        assertFalse(defaults.contains("skeletonTopology"));
+        assertFalse(defaults.contains("skeletonGraph"));
+        assertTrue(defaults.contains("diameter"));
+        assertEquals(Collections.singletonList("skeletonTopology"),
+                names(Stages.select(Collections.singletonList("skeletonTopology"))));
+    }
+}